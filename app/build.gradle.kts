@@ -28,6 +28,18 @@ android {
         }
     }
 
+    // Models are memory-mapped straight out of the APK, which needs them stored uncompressed
+    androidResources {
+        noCompress += listOf("onnx", "forest")
+    }
+
+    // Wall-clock assertions are opt-in: ./gradlew testDebugUnitTest -PauraBenchmarks
+    testOptions {
+        unitTests.all {
+            it.systemProperty("aura.benchmarks", project.hasProperty("auraBenchmarks"))
+        }
+    }
+
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
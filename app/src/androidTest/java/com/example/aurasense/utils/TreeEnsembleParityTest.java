@@ -0,0 +1,83 @@
+package com.example.aurasense.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+/**
+ * The pure-Java forest must give the ONNX model's label for every window. Runs both backends
+ * on the bundled assets over random standardized feature rows, including rows far outside
+ * the training range.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TreeEnsembleParityTest {
+
+    private static final int ROWS = 5000;
+
+    private OnnxBackend onnx;
+    private TreeEnsembleBackend forest;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        assumeTrue("no " + TreeEnsembleBackend.MODEL_ASSET + " bundled",
+                ModelAsset.exists(context, TreeEnsembleBackend.MODEL_ASSET));
+        onnx = new OnnxBackend(context);
+        forest = new TreeEnsembleBackend(context);
+    }
+
+    @After
+    public void tearDown() {
+        if (onnx != null) onnx.close();
+        if (forest != null) forest.close();
+    }
+
+    @Test
+    public void batchLabelsMatchOnnx() throws Exception {
+        float[] rows = randomRows(new Random(42), ROWS);
+        TFLiteEmotionInterpreter.BatchResult expected = onnx.predictBatch(rows, ROWS);
+        TFLiteEmotionInterpreter.BatchResult actual = forest.predictBatch(rows, ROWS);
+        assertArrayEquals(expected.labels, actual.labels);
+    }
+
+    @Test
+    public void runnerLabelsMatchOnnx() throws Exception {
+        Random random = new Random(7);
+        InferenceBackend.Runner expected = onnx.newRunner();
+        InferenceBackend.Runner actual = forest.newRunner();
+        try {
+            for (int i = 0; i < 500; i++) {
+                float[] row = randomRows(random, 1);
+                assertEquals("row " + i, expected.run(row), actual.run(row));
+            }
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    // Mostly standard normal like real windows, with some extremes
+    private static float[] randomRows(Random random, int count) {
+        float[] rows = new float[count * TFLiteEmotionInterpreter.NUM_FEATURES];
+        for (int i = 0; i < rows.length; i++) {
+            if (random.nextInt(100) < 5) {
+                rows[i] = (float) (random.nextGaussian() * 50);
+            } else {
+                rows[i] = (float) random.nextGaussian();
+            }
+        }
+        return rows;
+    }
+}
@@ -13,6 +13,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.aurasense.R;
+import com.example.aurasense.utils.HistoryCursor;
 import com.example.aurasense.utils.HistoryStorage;
 import com.github.mikephil.charting.charts.CombinedChart;
 import com.github.mikephil.charting.components.Description;
@@ -47,12 +48,16 @@ public class AnalyticsActivity extends AppCompatActivity {
     private enum Feature { BPM, TEMPERATURE, MOVEMENT }
     private Feature currentFeature = Feature.BPM;
 
+    // Charted window; only these rows, and only the feature's columns, are read
+    private static final long WINDOW_MS = 24 * 60 * 60 * 1000L;
+
     private final SimpleDateFormat timeFmt = new SimpleDateFormat("HH:mm", Locale.getDefault());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_analytics);
+        HistoryStorage.init(this);
 
         // IMPORTANT: Do NOT touch BLEManager here (keeps HomeActivity’s callback intact)
 
@@ -168,8 +173,14 @@ public class AnalyticsActivity extends AppCompatActivity {
     }
 
     private void render() {
-        List<HistoryStorage.Entry> raw = HistoryStorage.getHistory();
-        if (raw == null || raw.isEmpty()) {
+        long now = System.currentTimeMillis();
+        HistoryCursor window = HistoryStorage.range(now - WINDOW_MS, Long.MAX_VALUE);
+        HistoryStorage.Columns raw = currentFeature == Feature.MOVEMENT
+                ? HistoryStorage.project(window, HistoryCursor.COL_ACC_MAG,
+                        HistoryCursor.COL_ACC_X, HistoryCursor.COL_ACC_Y, HistoryCursor.COL_ACC_Z)
+                : HistoryStorage.project(window, currentFeature == Feature.TEMPERATURE
+                        ? HistoryCursor.COL_TEMP : HistoryCursor.COL_BPM);
+        if (raw.count == 0) {
             analyticsTitle.setText("Analytics");
             summaryText.setText("No data available yet.");
             chart.clear();
@@ -185,22 +196,29 @@ public class AnalyticsActivity extends AppCompatActivity {
         float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY, sum = 0f;
         int n = 0;
 
-        for (int i = 0; i < raw.size(); i++) {
-            HistoryStorage.Entry e = raw.get(i);
+        // The window is oldest first; index 0 stays the newest sample
+        for (int i = 0; i < raw.count; i++) {
+            int row = raw.count - 1 - i;
             float y;
             switch (currentFeature) {
-                case TEMPERATURE: y = e.temp; break;
+                case TEMPERATURE: y = raw.get(HistoryCursor.COL_TEMP)[row]; break;
                 case MOVEMENT:
-                    y = Float.isNaN(e.accMag) ? (float)Math.sqrt(e.accX*e.accX + e.accY*e.accY + e.accZ*e.accZ) : e.accMag;
+                    y = raw.get(HistoryCursor.COL_ACC_MAG)[row];
+                    if (Float.isNaN(y)) {
+                        float x = raw.get(HistoryCursor.COL_ACC_X)[row];
+                        float yy = raw.get(HistoryCursor.COL_ACC_Y)[row];
+                        float z = raw.get(HistoryCursor.COL_ACC_Z)[row];
+                        y = (float)Math.sqrt(x*x + yy*yy + z*z);
+                    }
                     break;
                 case BPM:
-                default: y = e.bpm;
+                default: y = raw.get(HistoryCursor.COL_BPM)[row];
             }
             if (Float.isNaN(y) || Float.isInfinite(y)) continue;
 
             linePoints.add(new Entry(i, y));
             barPoints.add(new BarEntry(i, y));
-            xLabels.add(timeFmt.format(new Date(e.timestamp)));
+            xLabels.add(timeFmt.format(new Date(raw.timestamps[row])));
 
             min = Math.min(min, y);
             max = Math.max(max, y);
@@ -21,6 +21,9 @@ import androidx.core.content.ContextCompat;
 
 import com.example.aurasense.R;
 import com.example.aurasense.ble.BLEManager;
+import com.example.aurasense.ble.BandScanner;
+
+import java.util.List;
 
 public class DevicePairingActivity extends AppCompatActivity implements BLEManager.BLECallback {
 
@@ -28,6 +31,8 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
     private static final String TAG = "DevicePairingActivity";
 
     private BLEManager bleManager;
+    private BandScanner bandScanner;
+    private BluetoothDevice targetDevice;
     private boolean isConnecting = false;
     private int connectionAttempts = 0;
     private static final int MAX_CONNECTION_ATTEMPTS = 3;
@@ -53,6 +58,7 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
 
         // Singleton BLEManager automatically sets callback
         bleManager = BLEManager.getInstance(this, this);
+        bandScanner = new BandScanner(this);
 
         connectBtn.setOnClickListener(v -> requestBluetoothPermissions());
 
@@ -107,9 +113,68 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
             return;
         }
 
+        // Advertising bands first; bands paired in system settings are the fallback
+        if (!bandScanner.start(this::onScanFinished)) {
+            connectToPairedBand();
+        }
+    }
+
+    private void onScanFinished(List<BandScanner.Result> bands) {
+        if (bands.isEmpty()) {
+            Log.d(TAG, "No band advertising nearby. Checking paired devices...");
+            connectToPairedBand();
+            return;
+        }
+
+        BandScanner.Result best = bands.get(0);
+        Log.d(TAG, "Scan found " + bands.size() + " band(s); strongest " + best.name
+                + " (" + best.address + ", " + best.rssi + " dBm)");
+
+        isConnecting = true;
+        targetDevice = best.device;
+        updateConnectionStatus("Device found! Connecting to " + displayName(best) + "...", true);
+        bleManager.connectToDevice(best.device);
+        startConnectionTimeout();
+    }
+
+    private void connectToPairedBand() {
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
+            updateConnectionStatus("Bluetooth permissions not granted", false);
+            return;
+        }
+
+        BluetoothAdapter adapter = BluetoothAdapter.getDefaultAdapter();
+        if (adapter == null || !adapter.isEnabled()) {
+            updateConnectionStatus("Please enable Bluetooth", false);
+            return;
+        }
+
+        BluetoothDevice device = findPairedBand(adapter);
+        if (device != null) {
+            String deviceName = device.getName();
+            Log.d(TAG, "Compatible paired device found: " + deviceName);
+
+            isConnecting = true;
+            targetDevice = device;
+            updateConnectionStatus("Device found! Connecting to " + deviceName + "...", true);
+            bleManager.connectToDevice(device);
+            startConnectionTimeout();
+            return;
+        }
+
+        // Show all available devices to help with debugging
+        StringBuilder availableDevices = new StringBuilder("Available paired devices:\n");
+        for (BluetoothDevice paired : adapter.getBondedDevices()) {
+            availableDevices.append("- ").append(paired.getName()).append("\n");
+        }
+        Log.d(TAG, availableDevices.toString());
+        
+        updateConnectionStatus("No compatible device found", false);
+        Toast.makeText(this, "No band found. Make sure it is powered on and nearby.", Toast.LENGTH_LONG).show();
+    }
+
+    private BluetoothDevice findPairedBand(BluetoothAdapter adapter) {
         for (BluetoothDevice device : adapter.getBondedDevices()) {
-            Log.d(TAG, "Found paired device: " + device.getName() + " (" + device.getAddress() + ")");
-            
             // Check for multiple possible device names
             String deviceName = device.getName();
             if (deviceName != null && (
@@ -117,34 +182,14 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
                     deviceName.contains("ESP32") ||
                     deviceName.contains("AuraSense") ||
                     deviceName.contains("EmotionBand"))) {
-                
-                Log.d(TAG, "Compatible device found: " + deviceName + ". Waiting 500ms before connecting...");
-
-                isConnecting = true;
-                updateConnectionStatus("Device found! Connecting to " + deviceName + "...", true);
-
-                new android.os.Handler(getMainLooper()).postDelayed(() -> {
-                    Log.d(TAG, "Connecting to device: " + deviceName);
-                    updateConnectionStatus("Establishing connection...", true);
-                    bleManager.connectToDevice(device);
-                    
-                    // Start connection timeout
-                    startConnectionTimeout();
-                }, 500); //Delay to stabilize BLE stack
-
-                return;
+                return device;
             }
         }
+        return null;
+    }
 
-        // Show all available devices to help with debugging
-        StringBuilder availableDevices = new StringBuilder("Available paired devices:\n");
-        for (BluetoothDevice device : adapter.getBondedDevices()) {
-            availableDevices.append("- ").append(device.getName()).append("\n");
-        }
-        Log.d(TAG, availableDevices.toString());
-        
-        updateConnectionStatus("No compatible device found", false);
-        Toast.makeText(this, "No compatible device found. Check paired devices in Bluetooth settings.", Toast.LENGTH_LONG).show();
+    private static String displayName(BandScanner.Result band) {
+        return band.name != null ? band.name : band.address;
     }
 
 
@@ -217,22 +262,15 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
             return;
         }
 
-        for (BluetoothDevice device : adapter.getBondedDevices()) {
-            String deviceName = device.getName();
-            if (deviceName != null && (
-                    deviceName.equals("ESP32_EmotionBand") ||
-                    deviceName.contains("ESP32") ||
-                    deviceName.contains("AuraSense") ||
-                    deviceName.contains("EmotionBand"))) {
-                
-                Log.d(TAG, "Retrying connection to: " + deviceName);
-                updateConnectionStatus("Retrying connection to " + deviceName + "...", true);
-                bleManager.connectToDevice(device);
-                
-                // Start connection timeout for retry
-                startConnectionTimeout();
-                return;
-            }
+        BluetoothDevice device = targetDevice != null ? targetDevice : findPairedBand(adapter);
+        if (device != null) {
+            Log.d(TAG, "Retrying connection to: " + device.getAddress());
+            updateConnectionStatus("Retrying connection to " + (device.getName() != null ? device.getName() : device.getAddress()) + "...", true);
+            bleManager.connectToDevice(device);
+
+            // Start connection timeout for retry
+            startConnectionTimeout();
+            return;
         }
         
         updateConnectionStatus("Device not found for retry", false);
@@ -296,6 +334,7 @@ public class DevicePairingActivity extends AppCompatActivity implements BLEManag
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        bandScanner.stop();
         Log.d(TAG, "DevicePairingActivity destroyed. BLEManager stays connected.");
     }
 }
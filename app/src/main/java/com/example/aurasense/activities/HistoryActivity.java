@@ -2,6 +2,7 @@ package com.example.aurasense.activities;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ListView;
@@ -11,31 +12,45 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.aurasense.R;
+import com.example.aurasense.utils.FeatureWindow;
+import com.example.aurasense.utils.HistoryCursor;
 import com.example.aurasense.utils.HistoryStorage;
+import com.example.aurasense.utils.ModelRegistry;
 import com.example.aurasense.utils.TFLiteEmotionInterpreter;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class HistoryActivity extends AppCompatActivity {
+public class HistoryActivity extends AppCompatActivity implements ModelRegistry.Callback {
+
+    private static final String TAG = "HistoryActivity";
+    // Rows listed; older history stays on disk for Analytics and exports
+    private static final int LIST_ROWS = 500;
+
+    // Reading, scoring and formatting history runs here; the list is set on the UI thread
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aura-history");
+        t.setDaemon(true);
+        return t;
+    });
 
     private ListView historyListView;
     private Button clearHistoryBtn, analyticsBtn;
-    private TFLiteEmotionInterpreter interpreter;
+    private volatile TFLiteEmotionInterpreter interpreter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_history);
-
-        try {
-            interpreter = new TFLiteEmotionInterpreter(this);
-        } catch (Exception e) {
-            Toast.makeText(this, "Failed to load model: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        HistoryStorage.init(this);
 
         historyListView = findViewById(R.id.historyListView);
         clearHistoryBtn = findViewById(R.id.clearHistoryBtn);
@@ -48,7 +63,8 @@ public class HistoryActivity extends AppCompatActivity {
 
         clearHistoryBtn.setOnClickListener(v -> showClearHistoryDialog());
 
-        loadHistory();
+        // Shared with Home, so this is normally ready on the next main-loop turn
+        ModelRegistry.getInstance().acquire(this, this);
 
         BottomNavigationView bottomNavigation = findViewById(R.id.bottomNavigation);
         bottomNavigation.setSelectedItemId(R.id.nav_history);
@@ -78,22 +94,78 @@ public class HistoryActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    public void onModelReady(TFLiteEmotionInterpreter loaded) {
+        if (isDestroyed()) {
+            loaded.close();
+            return;
+        }
+        interpreter = loaded;
+        loadHistory();
+    }
+
+    @Override
+    public void onModelFailed(Exception e) {
+        if (isDestroyed()) return;
+        Toast.makeText(this, "Failed to load model: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        loadHistory();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        TFLiteEmotionInterpreter loaded = interpreter;
+        interpreter = null;
+        // Closed behind any load still scoring with it
+        if (loaded != null) loader.execute(loaded::close);
+        loader.shutdown();
+    }
+
     private void loadHistory() {
+        loadHistory(false);
+    }
+
+    private void loadHistory(boolean clearFirst) {
+        TFLiteEmotionInterpreter scorer = interpreter;
+        loader.execute(() -> {
+            if (clearFirst) HistoryStorage.clearHistory();
+            ArrayList<String> entries = formatHistory(scorer);
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                historyListView.setAdapter(new ArrayAdapter<>(
+                        this, android.R.layout.simple_list_item_1, entries));
+            });
+        });
+    }
+
+    /** Loader thread: the newest {@link #LIST_ROWS} rows, scored and formatted, newest first. */
+    private ArrayList<String> formatHistory(TFLiteEmotionInterpreter scorer) {
         ArrayList<String> entries = new ArrayList<>();
         SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, HH:mm", Locale.getDefault());
 
-        for (HistoryStorage.Entry entry : HistoryStorage.getHistory()) {
+        HistoryCursor newest = HistoryStorage.latest(LIST_ROWS);
+        int shown = newest.count();
+        List<HistoryStorage.Entry> history = new ArrayList<>(shown);
+        while (newest.next()) history.add(newest.entry());
+        if (shown > 0) {
+            // Plus the window before the oldest listed row, so that row can be scored too
+            long oldest = history.get(shown - 1).timestamp;
+            HistoryCursor before = HistoryStorage.range(oldest - TFLiteEmotionInterpreter.WINDOW_MS, oldest);
+            List<HistoryStorage.Entry> earlier = new ArrayList<>(before.count());
+            while (before.next()) earlier.add(before.entry());
+            Collections.reverse(earlier); // the range is oldest first
+            history.addAll(earlier);
+        }
+        int[] predictions = scoreHistory(scorer, history);
+
+        for (int k = 0; k < shown; k++) {
+            HistoryStorage.Entry entry = history.get(k);
             try {
                 float accMag = (float) Math.sqrt(
                         entry.accX * entry.accX + entry.accY * entry.accY + entry.accZ * entry.accZ
                 );
 
-                // Default to 0 in case bvp is not yet tracked in Entry
-                float bvp = entry.bvp != 0 ? entry.bvp : 0.005f;
-
-                int prediction = interpreter.predictFromRawSensors(
-                        entry.accX, entry.accY, entry.accZ, entry.temp, bvp
-                );
+                int prediction = predictions[k];
 
                 String emotionLabel;
                 switch (prediction) {
@@ -136,10 +208,44 @@ public class HistoryActivity extends AppCompatActivity {
         if (entries.isEmpty()) {
             entries.add("No history data available");
         }
+        return entries;
+    }
+
+    /**
+     * Re-scores every stored sample on the 30s window ending at it, all windows in one batched
+     * model run. Samples whose window is not full yet stay unscored (-1). {@code history} is
+     * newest first, like the storage.
+     */
+    private static int[] scoreHistory(TFLiteEmotionInterpreter interpreter, List<HistoryStorage.Entry> history) {
+        int n = history.size();
+        int[] predictions = new int[n];
+        Arrays.fill(predictions, -1);
+        if (interpreter == null || n == 0) return predictions;
+
+        FeatureWindow window = TFLiteEmotionInterpreter.newFeatureWindow();
+        float[] sample = new float[TFLiteEmotionInterpreter.CHANNELS];
+        float[] features = new float[n * TFLiteEmotionInterpreter.NUM_FEATURES];
+        int[] entryOfRow = new int[n];
+        int rows = 0;
+        for (int k = n - 1; k >= 0; k--) { // oldest first
+            HistoryStorage.Entry entry = history.get(k);
+            // Default to 0 in case bvp is not yet tracked in Entry
+            float bvp = entry.bvp != 0 ? entry.bvp : 0.005f;
+            TFLiteEmotionInterpreter.toModelChannels(entry.accX, entry.accY, entry.accZ, entry.temp, bvp, sample);
+            window.add(entry.timestamp, sample);
+            window.evictUpTo(entry.timestamp - TFLiteEmotionInterpreter.WINDOW_MS);
+            if (!TFLiteEmotionInterpreter.isWindowReady(window)) continue;
+            TFLiteEmotionInterpreter.scaledFeatures(window, features, rows * TFLiteEmotionInterpreter.NUM_FEATURES);
+            entryOfRow[rows++] = k;
+        }
 
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this, android.R.layout.simple_list_item_1, entries);
-        historyListView.setAdapter(adapter);
+        try {
+            TFLiteEmotionInterpreter.BatchResult result = interpreter.predictBatch(features, rows);
+            for (int r = 0; r < rows; r++) predictions[entryOfRow[r]] = result.labels[r];
+        } catch (Exception e) {
+            Log.e(TAG, "Batch scoring of " + rows + " history windows failed", e);
+        }
+        return predictions;
     }
 
     private void showClearHistoryDialog() {
@@ -147,8 +253,7 @@ public class HistoryActivity extends AppCompatActivity {
                 .setTitle("Clear History")
                 .setMessage("Are you sure you want to clear all history data? This action cannot be undone.")
                 .setPositiveButton("Clear", (dialog, which) -> {
-                    HistoryStorage.clearHistory();
-                    loadHistory(); // Refresh the list
+                    loadHistory(true); // Clear, then refresh the list
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
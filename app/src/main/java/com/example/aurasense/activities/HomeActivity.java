@@ -17,15 +17,24 @@ import androidx.core.content.ContextCompat;
 
 import com.example.aurasense.R;
 import com.example.aurasense.ble.BLEManager;
+import com.example.aurasense.ble.FrameDecoder;
+import com.example.aurasense.ble.SampleBatch;
+import com.example.aurasense.ble.SampleBatchListener;
+import com.example.aurasense.pipeline.BackpressurePolicy;
+import com.example.aurasense.pipeline.PipelineStage;
 import com.example.aurasense.utils.HistoryStorage;
+import com.example.aurasense.utils.InferenceExecutor;
+import com.example.aurasense.utils.ModelRegistry;
 import com.example.aurasense.utils.NotificationManager;
 import com.example.aurasense.utils.TFLiteEmotionInterpreter;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class HomeActivity extends AppCompatActivity implements BLEManager.BLECallback {
+public class HomeActivity extends AppCompatActivity implements BLEManager.BLECallback, SampleBatchListener {
 
     private static final String TAG = "HomeActivity";
 
@@ -34,7 +43,6 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
     private LinearLayout motionCardLayout, detailedMotionData;
     private Button connectDeviceBtn;
     private BLEManager bleManager;
-    private TFLiteEmotionInterpreter interpreter;
     private NotificationManager notificationManager;
 
     private LinearLayout statusSummaryCard;
@@ -43,27 +51,46 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
 
     // Debounce for notifications
     private int lastNotifiedLabel = -99;
-
-    // ---- Stale-data watchdog & auto-reconnect ----
-    private final Handler watchdog = new Handler(Looper.getMainLooper());
-    private long lastDataMs = 0L;
-    private static final long DATA_STALE_MS = 6000L;  // 6s without packets => disconnected
-    private static final long WATCHDOG_PERIOD_MS = 2000L;
-
-    private final Runnable staleCheck = new Runnable() {
+    private boolean modelLoadingShown = false;
+
+    // Reused for the legacy JSON string path (BLE callbacks arrive on one thread)
+    private final SampleBatch jsonBatch = new SampleBatch(1);
+
+    // ---- Ingest pipeline: BLE parse worker -> inference executor -> UI ----
+    // The parse workers keep each band's window current; the executor runs the model once per
+    // hop on the newest window. The UI only ever needs the newest reading and prediction.
+    private static final long HISTORY_PERIOD_MS = 1900L;
+    private final InferenceExecutor inference = new InferenceExecutor();
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final PipelineStage<SampleBatch> readingsUiStage = PipelineStage.onExecutor(
+            "ui-readings", 1, BackpressurePolicy.COALESCE, uiHandler::post, this::showReadings);
+    private final PipelineStage<Prediction> predictionUiStage = PipelineStage.onExecutor(
+            "ui-prediction", 1, BackpressurePolicy.COALESCE, uiHandler::post, this::showPrediction);
+    private boolean sensorWorn = false;
+
+    // ---- Bands: one interpreter each over the shared model, scored on the inference executor ----
+    // The cards and alerts follow the primary band (the first one that connected).
+    private static final String LEGACY_BAND = "legacy";
+    private final Map<String, BandState> bands = new ConcurrentHashMap<>();
+    private volatile String primaryAddress = null;
+    // Settings' "Model 2": score every window with a second bundled model as well, for comparison
+    private boolean model2Enabled;
+
+    // ---- Pipeline metrics, logged while visible ----
+    // Staleness and reconnects live in BLEManager's connection state machine.
+    private final Handler metricsLog = new Handler(Looper.getMainLooper());
+    private static final long METRICS_LOG_PERIOD_MS = 10000L;
+
+    private final Runnable logPipelineMetrics = new Runnable() {
         @Override public void run() {
-            long now = System.currentTimeMillis();
-            boolean stale = (now - lastDataMs) > DATA_STALE_MS;
-
-            if (stale) {
-                // UI: show disconnected and clear readings so we don't display stale values
-                clearRealtimeReadings();
-                updateStatusCard("disconnected", "Device Disconnected — reconnecting…");
-
-                // Try to reconnect (see notes in triggerReconnect)
-                triggerReconnect();
+            if (bleManager != null) {
+                StringBuilder sb = new StringBuilder("Pipeline:\n").append(bleManager.describePipelines());
+                sb.append('\n').append(ModelRegistry.getInstance());
+                sb.append('\n').append(inference);
+                sb.append('\n').append(readingsUiStage).append('\n').append(predictionUiStage);
+                Log.d(TAG, sb.toString());
             }
-            watchdog.postDelayed(this, WATCHDOG_PERIOD_MS);
+            metricsLog.postDelayed(this, METRICS_LOG_PERIOD_MS);
         }
     };
 
@@ -71,11 +98,14 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_home);
+        HistoryStorage.init(this);
 
         SharedPreferences prefs = getSharedPreferences("AuraPrefs", MODE_PRIVATE);
         // kept for future toggles
         boolean discomfortAlertsEnabled = prefs.getBoolean("stress_alerts_enabled", true);
-        boolean model2Enabled = prefs.getBoolean("model_2_enabled", false);
+        model2Enabled = prefs.getBoolean("model_2_enabled", false);
+        inference.setHopMs(prefs.getLong("inference_hop_ms", InferenceExecutor.DEFAULT_HOP_MS));
+        inference.subscribe(this::onPrediction);
 
         hrValue = findViewById(R.id.hrValue);
         tempCard = findViewById(R.id.tempCard);
@@ -96,11 +126,10 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
         motionCardLayout.setOnClickListener(v -> toggleMotionDetails());
         updateStatusCard("normal", "All Good");
 
-        try {
-            interpreter = new TFLiteEmotionInterpreter(this);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to load ONNX interpreter", e);
-        }
+        // Load the model in the background while the band connects; bands and screens share it
+        ModelRegistry models = ModelRegistry.getInstance();
+        if (!models.isLoaded()) updateStatusCard("model_loading", "Loading stress model…");
+        models.preload(this, this::onModelLoaded);
 
         notificationManager = new NotificationManager(this);
 
@@ -108,9 +137,6 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
         bleManager = BLEManager.getInstance(this, this);
         bleManager.setCallback(this);
 
-        // If your BLEManager exposes an auto-reconnect toggle, use it:
-        // bleManager.setAutoReconnectEnabled(true);
-
         if (isConnected) {
             connectDeviceBtn.setVisibility(Button.GONE);
         } else {
@@ -150,6 +176,16 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
         });
     }
 
+    // Main thread. Only replaces the loading message, not a status that has come in meanwhile.
+    private void onModelLoaded(boolean ready) {
+        if (isDestroyed() || !modelLoadingShown) return;
+        if (ready) {
+            updateStatusCard("normal", "All Good");
+        } else {
+            updateStatusCard("error", "Stress model unavailable");
+        }
+    }
+
     // ---- BLE callbacks ----
 
     @Override
@@ -158,10 +194,28 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
             Toast.makeText(this, "Device connected!", Toast.LENGTH_SHORT).show();
             updateStatusCard("normal", "Connected");
             connectDeviceBtn.setVisibility(Button.GONE);
-            lastDataMs = System.currentTimeMillis(); // reset staleness
         });
     }
 
+    @Override
+    public void onConnected(String deviceAddress) {
+        if (primaryAddress == null) setPrimaryBand(deviceAddress);
+        if (deviceAddress.equals(primaryAddress)) {
+            onConnected();
+        } else {
+            Log.d(TAG, "Additional band connected: " + deviceAddress);
+        }
+    }
+
+    @Override
+    public void onDisconnected(String deviceAddress) {
+        if (primaryAddress == null || deviceAddress.equals(primaryAddress)) {
+            onDisconnected();
+        } else {
+            Log.w(TAG, "Additional band disconnected: " + deviceAddress);
+        }
+    }
+
     @Override
     public void onDisconnected() {
         runOnUiThread(() -> {
@@ -170,99 +224,216 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
             updateStatusCard("disconnected", "Device Disconnected — reconnecting…");
             connectDeviceBtn.setVisibility(Button.VISIBLE);
         });
-        // kick off reconnect attempts
-        triggerReconnect();
+        // BLEManager is already reconnecting with backoff
     }
 
     @Override
     public void onDataReceived(String data) {
-        lastDataMs = System.currentTimeMillis(); // fresh packet, not stale
         Log.d(TAG, "Final JSON received in HomeActivity: " + data);
         runOnUiThread(() -> debugRawJsonText.setText(data));
 
-        try {
-            JSONObject json = new JSONObject(data);
-
-            float bpm  = (float) json.optDouble("bpm", Float.NaN);
-            float hrv  = (float) json.optDouble("hrv", Float.NaN);
-            float temp = (float) json.optDouble("temp", Float.NaN);
-            float accX = (float) json.optDouble("acc_x", Float.NaN);
-            float accY = (float) json.optDouble("acc_y", Float.NaN);
-            float accZ = (float) json.optDouble("acc_z", Float.NaN);
-            float bvp  = (float) json.optDouble("bvp", Float.NaN);
-            int finger = json.optInt("finger", 0); // 1 = worn, 0 = not worn
-
-            // Wear detection: if not worn, show prompt and don't compute
-            if (finger != 1) {
-                runOnUiThread(() -> {
-                    updateStatusCard("not_worn", "Please wear the device to start measuring");
-                    clearRealtimeReadings();
-                });
-                lastNotifiedLabel = -99;
-                return;
+        jsonBatch.clear();
+        if (!FrameDecoder.decodeJson(data, jsonBatch, System.currentTimeMillis())) {
+            Log.e(TAG, "JSON parsing error: " + data);
+            runOnUiThread(() -> debugRawJsonText.setText("Error parsing JSON:\n" + data));
+            return;
+        }
+        onSampleBatch(LEGACY_BAND, jsonBatch);
+    }
+
+    // Runs on the band's parse worker, once per notification: store, feed the band's inference
+    // window, and hand one detached copy to the UI.
+    @Override
+    public void onSampleBatch(String deviceAddress, SampleBatch batch) {
+        if (primaryAddress == null) setPrimaryBand(deviceAddress);
+        BandState band = bandFor(deviceAddress);
+        boolean primary = deviceAddress.equals(primaryAddress);
+
+        // Store history only when worn, thinned to the legacy 2s cadence so batched
+        // native-rate streams don't flood the history screens
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isAfterGap(i)) {
+                // Lost frames (or a new link): the history shows the hole, inference restarts its window
+                if (band.lastSampleMs > 0) {
+                    HistoryStorage.addGap(deviceAddress, new HistoryStorage.Gap(band.lastSampleMs, batch.timestampMs[i]));
+                }
             }
+            band.lastSampleMs = batch.timestampMs[i];
+            if (!batch.isWorn(i)) continue;
+            band.lastBpm = batch.bpm[i];
+            if (batch.timestampMs[i] - band.lastHistoryMs < HISTORY_PERIOD_MS) continue;
+            band.lastHistoryMs = batch.timestampMs[i];
+            float x = batch.accX[i], y = batch.accY[i], z = batch.accZ[i];
+            float accMag = (float) Math.sqrt(x * x + y * y + z * z);
+            HistoryStorage.add(deviceAddress, new HistoryStorage.Entry(
+                    batch.timestampMs[i], batch.bpm[i], batch.temp[i], batch.hrv[i],
+                    x, y, z, accMag, batch.bvp[i], band.lastLabel));
+        }
+        // Gaps reach the executor too: it restarts the window there
+        inference.submit(deviceAddress, batch);
+        if (primary) readingsUiStage.offer(batch.copy());
+    }
+
+    // Inference thread, once per hop per band; only the primary band drives the cards
+    private void onPrediction(String deviceAddress, int prediction, long windowEndMs) {
+        Log.d(TAG, "Prediction from model (" + deviceAddress + "): " + prediction);
+        BandState band = bands.get(deviceAddress);
+        if (band != null && prediction >= 0) band.lastLabel = prediction;
+        if (band != null && deviceAddress.equals(primaryAddress)) {
+            predictionUiStage.offer(new Prediction(prediction, band.lastBpm, System.currentTimeMillis()));
+        }
+    }
 
-            float accMag = (float) Math.sqrt(accX * accX + accY * accY + accZ * accZ);
+    private void setPrimaryBand(String deviceAddress) {
+        primaryAddress = deviceAddress;
+        HistoryStorage.setPrimaryDevice(deviceAddress);
+    }
 
-            // Store history only when worn
-            HistoryStorage.add(new HistoryStorage.Entry(
-                    System.currentTimeMillis(), bpm, temp, hrv, accX, accY, accZ, accMag, bvp));
+    private synchronized BandState bandFor(String deviceAddress) {
+        BandState band = bands.get(deviceAddress);
+        if (band == null) {
+            band = new BandState(deviceAddress);
+            bands.put(deviceAddress, band);
+        }
+        return band;
+    }
 
-            runOnUiThread(() -> {
-                hrValue.setText(Float.isNaN(bpm) ? "--" : String.format("%.0f", bpm));
-                tempCard.setText(Float.isNaN(temp) ? "--" : String.format("%.1f°C", temp));
-                motionCard.setText(Float.isNaN(accMag) ? "--" : String.format("%.2f m/s²", accMag));
-                accXValue.setText(Float.isNaN(accX) ? "--" : String.format("%.2f", accX));
-                accYValue.setText(Float.isNaN(accY) ? "--" : String.format("%.2f", accY));
-                accZValue.setText(Float.isNaN(accZ) ? "--" : String.format("%.2f", accZ));
-            });
+    private final class BandState implements ModelRegistry.Callback {
+        final String address;
+        volatile TFLiteEmotionInterpreter interpreter; // set on the main thread once the model is ready
+        volatile TFLiteEmotionInterpreter secondary;   // likewise, for Model 2
+        long lastHistoryMs = Long.MIN_VALUE / 2; // parse worker only
+        long lastSampleMs; // parse worker only
+        volatile float lastBpm = Float.NaN;
+        volatile int lastLabel = HistoryStorage.Entry.LABEL_NONE; // stored with each history sample
+
+        BandState(String address) {
+            this.address = address;
+            // Samples that arrive before the model is ready are stored but not scored
+            ModelRegistry.getInstance().acquire(HomeActivity.this, this);
+        }
+
+        @Override
+        public void onModelReady(TFLiteEmotionInterpreter loaded) {
+            if (isDestroyed()) {
+                loaded.close();
+                return;
+            }
+            interpreter = loaded;
+            inference.addBand(address, loaded);
+            if (model2Enabled) acquireSecondary();
+        }
 
-            int prediction = (interpreter != null)
-                    ? interpreter.predictFromRawSensors(accX, accY, accZ, temp, bvp)
-                    : -1;
-
-            Log.d(TAG, "Prediction from model: " + prediction);
-
-            String timestamp = android.text.format.DateFormat
-                    .format("yyyy-MM-dd HH:mm:ss", System.currentTimeMillis()).toString();
-
-            runOnUiThread(() -> {
-                // Mapping: 0=baseline, 1=amusement, 2=stress
-                switch (prediction) {
-                    case 2:
-                        updateStatusCard("high_discomfort", "High Stress Detected");
-                        if (lastNotifiedLabel != 2) {
-                            appendNotificationHistoryLine("[Stress] " + timestamp + " • HR=" +
-                                    (Float.isNaN(bpm) ? "--" : String.format("%.0f", bpm)) + " bpm");
-                            notificationManager.sendEmotionAlert(2, Float.isNaN(bpm) ? 0f : bpm, timestamp);
-                            lastNotifiedLabel = 2;
-                        }
-                        break;
-
-                    case 1:
-                        updateStatusCard("amusement", "You Seem Amused 😊");
-                        if (lastNotifiedLabel != 1) {
-                            appendNotificationHistoryLine("[Amusement] " + timestamp + " • HR=" +
-                                    (Float.isNaN(bpm) ? "--" : String.format("%.0f", bpm)) + " bpm");
-                            notificationManager.sendEmotionAlert(1, Float.isNaN(bpm) ? 0f : bpm, timestamp);
-                            lastNotifiedLabel = 1;
-                        }
-                        break;
-
-                    case 0:
-                        updateStatusCard("normal", "All Good");
-                        lastNotifiedLabel = 0;
-                        break;
-
-                    default:
-                        updateStatusCard("error", "Analyzing…");
-                        break;
+        // Main thread, while holding the primary model, so Model 2 is a different one
+        private void acquireSecondary() {
+            ModelRegistry.getInstance().acquireSecondary(HomeActivity.this, new ModelRegistry.Callback() {
+                @Override
+                public void onModelReady(TFLiteEmotionInterpreter loaded) {
+                    if (isDestroyed()) {
+                        loaded.close();
+                        return;
+                    }
+                    secondary = loaded;
+                    inference.setSecondaryModel(address, loaded);
+                }
+
+                @Override
+                public void onModelFailed(Exception e) {
+                    Log.w(TAG, "Model 2 unavailable for " + address + ": " + e.getMessage());
                 }
             });
+        }
+
+        @Override
+        public void onModelFailed(Exception e) {
+            Log.e(TAG, "Failed to load ONNX interpreter for " + address, e);
+        }
 
-        } catch (JSONException e) {
-            Log.e(TAG, "JSON parsing error", e);
-            runOnUiThread(() -> debugRawJsonText.setText("Error parsing JSON:\n" + e.getMessage()));
+        // Inference thread, after the executor's last run
+        void close() {
+            TFLiteEmotionInterpreter i = interpreter;
+            if (i != null) i.close();
+            TFLiteEmotionInterpreter s = secondary;
+            if (s != null) s.close();
+        }
+    }
+
+    // UI thread, coalesced to the newest batch; the cards show its last sample
+    private void showReadings(SampleBatch b) {
+        int i = b.size() - 1;
+        debugRawJsonText.setText(b.seq[i] >= 0
+                ? "Frame #" + b.seq[i] + " (" + b.size() + " samples)" : "JSON sample");
+
+        // Wear detection: if not worn, show prompt and don't compute
+        if (!b.isWorn(i)) {
+            sensorWorn = false;
+            updateStatusCard("not_worn", "Please wear the device to start measuring");
+            clearRealtimeReadings();
+            lastNotifiedLabel = -99;
+            return;
+        }
+        sensorWorn = true;
+
+        float accX = b.accX[i], accY = b.accY[i], accZ = b.accZ[i];
+        float accMag = (float) Math.sqrt(accX * accX + accY * accY + accZ * accZ);
+        hrValue.setText(Float.isNaN(b.bpm[i]) ? "--" : String.format("%.0f", b.bpm[i]));
+        tempCard.setText(Float.isNaN(b.temp[i]) ? "--" : String.format("%.1f°C", b.temp[i]));
+        motionCard.setText(Float.isNaN(accMag) ? "--" : String.format("%.2f m/s²", accMag));
+        accXValue.setText(Float.isNaN(accX) ? "--" : String.format("%.2f", accX));
+        accYValue.setText(Float.isNaN(accY) ? "--" : String.format("%.2f", accY));
+        accZValue.setText(Float.isNaN(accZ) ? "--" : String.format("%.2f", accZ));
+    }
+
+    // UI thread, coalesced to the newest prediction
+    private void showPrediction(Prediction p) {
+        if (!sensorWorn) return; // band was taken off while the model was running
+
+        float bpm = p.bpm;
+        String timestamp = android.text.format.DateFormat
+                .format("yyyy-MM-dd HH:mm:ss", p.timeMs).toString();
+
+        // Mapping: 0=baseline, 1=amusement, 2=stress
+        switch (p.label) {
+            case 2:
+                updateStatusCard("high_discomfort", "High Stress Detected");
+                if (lastNotifiedLabel != 2) {
+                    appendNotificationHistoryLine("[Stress] " + timestamp + " • HR=" +
+                            (Float.isNaN(bpm) ? "--" : String.format("%.0f", bpm)) + " bpm");
+                    notificationManager.sendEmotionAlert(2, Float.isNaN(bpm) ? 0f : bpm, timestamp);
+                    lastNotifiedLabel = 2;
+                }
+                break;
+
+            case 1:
+                updateStatusCard("amusement", "You Seem Amused 😊");
+                if (lastNotifiedLabel != 1) {
+                    appendNotificationHistoryLine("[Amusement] " + timestamp + " • HR=" +
+                            (Float.isNaN(bpm) ? "--" : String.format("%.0f", bpm)) + " bpm");
+                    notificationManager.sendEmotionAlert(1, Float.isNaN(bpm) ? 0f : bpm, timestamp);
+                    lastNotifiedLabel = 1;
+                }
+                break;
+
+            case 0:
+                updateStatusCard("normal", "All Good");
+                lastNotifiedLabel = 0;
+                break;
+
+            default:
+                updateStatusCard("error", "Analyzing…");
+                break;
+        }
+    }
+
+    private static final class Prediction {
+        final int label;
+        final float bpm;
+        final long timeMs;
+
+        Prediction(int label, float bpm, long timeMs) {
+            this.label = label;
+            this.bpm = bpm;
+            this.timeMs = timeMs;
         }
     }
 
@@ -270,27 +441,38 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
     @Override
     protected void onResume() {
         super.onResume();
-        if (bleManager != null) bleManager.setCallback(this);
-        watchdog.removeCallbacks(staleCheck);
-        watchdog.postDelayed(staleCheck, WATCHDOG_PERIOD_MS);
+        if (bleManager != null) {
+            bleManager.setCallback(this);
+            bleManager.requestReconnect(); // no-op for bands already connecting or streaming
+        }
+        metricsLog.removeCallbacks(logPipelineMetrics);
+        metricsLog.postDelayed(logPipelineMetrics, METRICS_LOG_PERIOD_MS);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        watchdog.removeCallbacks(staleCheck);
+        metricsLog.removeCallbacks(logPipelineMetrics);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        watchdog.removeCallbacks(staleCheck);
+        metricsLog.removeCallbacks(logPipelineMetrics);
+        List<BandState> closing = new ArrayList<>(bands.values());
+        bands.clear();
+        inference.shutdown(() -> {
+            for (BandState band : closing) band.close();
+        });
+        readingsUiStage.shutdown();
+        predictionUiStage.shutdown();
     }
 
     // ---- UI helpers ----
 
     private void updateStatusCard(String status, String message) {
         if (statusSummaryCard == null || statusIcon == null || statusMessage == null) return;
+        modelLoadingShown = status.equals("model_loading");
 
         switch (status.toLowerCase()) {
             case "normal":
@@ -329,6 +511,13 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
                 statusMessage.setText(message);
                 break;
 
+            case "model_loading":
+                statusSummaryCard.setBackground(ContextCompat.getDrawable(this, R.drawable.status_card_disconnected));
+                statusIcon.setImageResource(R.drawable.ic_history);
+                statusMessage.setTextColor(ContextCompat.getColor(this, R.color.text_primary));
+                statusMessage.setText(message);
+                break;
+
             case "error":
                 statusSummaryCard.setBackground(ContextCompat.getDrawable(this, R.drawable.status_card_warning));
                 statusIcon.setImageResource(R.drawable.ic_warning);
@@ -370,19 +559,4 @@ public class HomeActivity extends AppCompatActivity implements BLEManager.BLECal
         String newLog = oldLog.isEmpty() ? line : oldLog + "\n" + line;
         notifPrefs.edit().putString("notifications", newLog).apply();
     }
-
-    // Try to keep BLE always connected.
-    private void triggerReconnect() {
-        if (bleManager == null) return;
-
-        // If BLEManager has these, prefer them:
-        // if (!bleManager.isConnected()) bleManager.reconnect();
-
-        // Otherwise fall back to scanning & connect:
-        try {
-            bleManager.requestReconnect(); // <— implemented this in BLEManager to wrap reconnect logic
-        } catch (Throwable t) {
-            Log.w(TAG, "Reconnect request failed (implement BLEManager.requestReconnect())", t);
-        }
-    }
 }
@@ -1,5 +1,6 @@
 package com.example.aurasense.activities;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Canvas;
@@ -20,6 +21,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.aurasense.R;
+import com.example.aurasense.utils.HistoryCursor;
 import com.example.aurasense.utils.HistoryStorage;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
@@ -27,8 +29,9 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -39,6 +42,14 @@ public class SettingsActivity extends AppCompatActivity {
     private enum ExportFormat { PDF, CSV, JSON }
     private ExportFormat pendingFormat = ExportFormat.PDF;
 
+    // Exports walk the whole persisted history and deleting it touches every segment file,
+    // so both run off the main thread
+    private final ExecutorService exporter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aura-export");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final ActivityResultLauncher<Intent> exportLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
@@ -47,22 +58,7 @@ public class SettingsActivity extends AppCompatActivity {
                         Toast.makeText(this, "No file selected.", Toast.LENGTH_SHORT).show();
                         return;
                     }
-                    try {
-                        switch (pendingFormat) {
-                            case PDF:
-                                writeHistoryPdf(uri);
-                                break;
-                            case CSV:
-                                writeHistoryCsv(uri);
-                                break;
-                            case JSON:
-                                writeHistoryJson(uri);
-                                break;
-                        }
-                    } catch (Exception ex) {
-                        Log.e(TAG, "Export failed", ex);
-                        Toast.makeText(this, "Export failed: " + ex.getMessage(), Toast.LENGTH_LONG).show();
-                    }
+                    export(pendingFormat, uri);
                 } else {
                     Toast.makeText(this, "Export canceled.", Toast.LENGTH_SHORT).show();
                 }
@@ -73,6 +69,7 @@ public class SettingsActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         Log.d(TAG, "SettingsActivity onCreate called");
         setContentView(R.layout.activity_settings);
+        HistoryStorage.init(this);
 
         // Views
         switchStressAlerts = findViewById(R.id.switchStressAlerts);
@@ -98,8 +95,7 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Export
         exportDataBtn.setOnClickListener(v -> {
-            List<HistoryStorage.Entry> history = HistoryStorage.getHistory();
-            if (history == null || history.isEmpty()) {
+            if (HistoryStorage.latest(1).count() == 0) {
                 Toast.makeText(this, "No data to export yet.", Toast.LENGTH_SHORT).show();
                 return;
             }
@@ -138,6 +134,43 @@ public class SettingsActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        exporter.shutdown(); // a running export still finishes its file
+    }
+
+    private void export(ExportFormat format, Uri uri) {
+        exportDataBtn.setEnabled(false);
+        Toast.makeText(this, "Exporting...", Toast.LENGTH_SHORT).show();
+        Context app = getApplicationContext();
+        exporter.execute(() -> {
+            String message;
+            try {
+                switch (format) {
+                    case PDF:
+                        writeHistoryPdf(uri);
+                        break;
+                    case CSV:
+                        writeHistoryCsv(uri);
+                        break;
+                    case JSON:
+                        writeHistoryJson(uri);
+                        break;
+                }
+                message = format + " exported: " + uri.getLastPathSegment();
+            } catch (Exception ex) {
+                Log.e(TAG, "Export failed", ex);
+                message = "Export failed: " + ex.getMessage();
+            }
+            String done = message;
+            runOnUiThread(() -> {
+                exportDataBtn.setEnabled(true);
+                Toast.makeText(app, done, Toast.LENGTH_LONG).show();
+            });
+        });
+    }
+
     private void showExportChooser() {
         final String[] items = {"PDF (recommended)", "CSV (spreadsheet)", "JSON"};
         new AlertDialog.Builder(this)
@@ -176,8 +209,8 @@ public class SettingsActivity extends AppCompatActivity {
 
     // ---------- PDF ----------
     private void writeHistoryPdf(Uri uri) throws Exception {
-        List<HistoryStorage.Entry> history = HistoryStorage.getHistory();
-        if (history == null || history.isEmpty()) throw new IllegalStateException("No history");
+        HistoryCursor history = HistoryStorage.newestFirst();
+        if (history.count() == 0) throw new IllegalStateException("No history");
 
         // Create PDF (A4 @ 72 dpi: 595 x 842 points)
         PdfDocument doc = new PdfDocument();
@@ -226,7 +259,7 @@ public class SettingsActivity extends AppCompatActivity {
         y += rowHeight;
 
         int pageNum = 1;
-        for (HistoryStorage.Entry e : history) {
+        while (history.next()) {
             if (y > pageHeight - margin) {
                 doc.finishPage(page);
                 pageNum++;
@@ -241,13 +274,12 @@ public class SettingsActivity extends AppCompatActivity {
                 y += rowHeight;
             }
 
-            String t = iso.format(e.timestamp);
-            String bpm = numOrBlank(e.bpm, 0);
-            String temp = numOrBlank(e.temp, 1);
-            String hrv = numOrBlank(e.hrv, 0);
-            float accMag = Float.isNaN(e.accMag) ? (float)Math.sqrt(e.accX*e.accX + e.accY*e.accY + e.accZ*e.accZ) : e.accMag;
-            String mov = numOrBlank(accMag, 2);
-            String bvp = numOrBlank(e.bvp, 3);
+            String t = iso.format(history.timestamp());
+            String bpm = numOrBlank(history.bpm(), 0);
+            String temp = numOrBlank(history.temp(), 1);
+            String hrv = numOrBlank(history.hrv(), 0);
+            String mov = numOrBlank(accMag(history), 2);
+            String bvp = numOrBlank(history.bvp(), 3);
 
             canvas.drawText(t,    colX[0], y, cellPaint);
             canvas.drawText(bpm,  colX[1], y, cellPaint);
@@ -264,7 +296,6 @@ public class SettingsActivity extends AppCompatActivity {
         try (OutputStream os = getContentResolver().openOutputStream(uri)) {
             if (os == null) throw new IllegalStateException("Cannot open output stream");
             doc.writeTo(os);
-            Toast.makeText(this, "PDF exported: " + uri.getLastPathSegment(), Toast.LENGTH_LONG).show();
         } finally {
             doc.close();
         }
@@ -285,28 +316,26 @@ public class SettingsActivity extends AppCompatActivity {
             pw.println("timestamp_iso,timestamp_ms,bpm,temp,hrv,acc_x,acc_y,acc_z,acc_mag,bvp");
 
             SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            List<HistoryStorage.Entry> history = HistoryStorage.getHistory();
+            HistoryCursor c = HistoryStorage.newestFirst();
 
-            for (HistoryStorage.Entry e : history) {
-                String ts = iso.format(e.timestamp);
-                float accMag = Float.isNaN(e.accMag) ? (float)Math.sqrt(e.accX*e.accX + e.accY*e.accY + e.accZ*e.accZ) : e.accMag;
+            while (c.next()) {
+                String ts = iso.format(c.timestamp());
                 pw.printf(Locale.US,
                         "%s,%d,%s,%s,%s,%s,%s,%s,%s,%s%n",
                         ts,
-                        e.timestamp,
-                        numOrBlank(e.bpm, 0),
-                        numOrBlank(e.temp, 1),
-                        numOrBlank(e.hrv, 0),
-                        numOrBlank(e.accX, 2),
-                        numOrBlank(e.accY, 2),
-                        numOrBlank(e.accZ, 2),
-                        numOrBlank(accMag, 2),
-                        numOrBlank(e.bvp, 3)
+                        c.timestamp(),
+                        numOrBlank(c.bpm(), 0),
+                        numOrBlank(c.temp(), 1),
+                        numOrBlank(c.hrv(), 0),
+                        numOrBlank(c.accX(), 2),
+                        numOrBlank(c.accY(), 2),
+                        numOrBlank(c.accZ(), 2),
+                        numOrBlank(accMag(c), 2),
+                        numOrBlank(c.bvp(), 3)
                 );
             }
 
             pw.flush();
-            Toast.makeText(this, "CSV exported: " + uri.getLastPathSegment(), Toast.LENGTH_LONG).show();
         }
     }
 
@@ -317,33 +346,35 @@ public class SettingsActivity extends AppCompatActivity {
              PrintWriter pw = new PrintWriter(osw)) {
 
             SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            List<HistoryStorage.Entry> history = HistoryStorage.getHistory();
+            HistoryCursor c = HistoryStorage.newestFirst();
 
             pw.println("[");
-            for (int i = 0; i < history.size(); i++) {
-                HistoryStorage.Entry e = history.get(i);
-                float accMag = Float.isNaN(e.accMag) ? (float)Math.sqrt(e.accX*e.accX + e.accY*e.accY + e.accZ*e.accZ) : e.accMag;
+            for (int i = 0; c.next(); i++) {
                 String obj = String.format(Locale.US,
                         "{\"timestamp_iso\":\"%s\",\"timestamp_ms\":%d," +
                                 "\"bpm\":%s,\"temp\":%s,\"hrv\":%s," +
                                 "\"acc_x\":%s,\"acc_y\":%s,\"acc_z\":%s,\"acc_mag\":%s," +
                                 "\"bvp\":%s}",
-                        iso.format(e.timestamp), e.timestamp,
-                        numOrNull(e.bpm, 0), numOrNull(e.temp, 1), numOrNull(e.hrv, 0),
-                        numOrNull(e.accX, 2), numOrNull(e.accY, 2), numOrNull(e.accZ, 2), numOrNull(accMag, 2),
-                        numOrNull(e.bvp, 3)
+                        iso.format(c.timestamp()), c.timestamp(),
+                        numOrNull(c.bpm(), 0), numOrNull(c.temp(), 1), numOrNull(c.hrv(), 0),
+                        numOrNull(c.accX(), 2), numOrNull(c.accY(), 2), numOrNull(c.accZ(), 2), numOrNull(accMag(c), 2),
+                        numOrNull(c.bvp(), 3)
                 );
                 pw.print(obj);
-                if (i < history.size() - 1) pw.println(",");
+                if (i < c.count() - 1) pw.println(",");
             }
             pw.println();
             pw.println("]");
 
             pw.flush();
-            Toast.makeText(this, "JSON exported: " + uri.getLastPathSegment(), Toast.LENGTH_LONG).show();
         }
     }
 
+    private static float accMag(HistoryCursor c) {
+        float accMag = c.accMag();
+        return Float.isNaN(accMag) ? (float) Math.sqrt(c.accX() * c.accX() + c.accY() * c.accY() + c.accZ() * c.accZ()) : accMag;
+    }
+
     private String numOrBlank(float v, int decimals) {
         if (Float.isNaN(v) || Float.isInfinite(v)) return "";
         String fmt = decimals <= 0 ? "%.0f" : "%." + decimals + "f";
@@ -370,17 +401,27 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     private void deleteAllAppData() {
-        try {
-            getSharedPreferences("AuraPrefs", MODE_PRIVATE).edit().clear().apply();
-            getSharedPreferences("AuraNotifications", MODE_PRIVATE).edit().clear().apply();
-            HistoryStorage.clearHistory();
-
-            switchStressAlerts.setChecked(true);
-            switchModel2.setChecked(false);
-
-            Toast.makeText(this, "All app data deleted successfully", Toast.LENGTH_LONG).show();
-        } catch (Exception e) {
-            Toast.makeText(this, "Error deleting data: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        getSharedPreferences("AuraPrefs", MODE_PRIVATE).edit().clear().apply();
+        getSharedPreferences("AuraNotifications", MODE_PRIVATE).edit().clear().apply();
+        switchStressAlerts.setChecked(true);
+        switchModel2.setChecked(false);
+
+        deleteDataBtn.setEnabled(false);
+        Context app = getApplicationContext();
+        exporter.execute(() -> {
+            String message;
+            try {
+                HistoryStorage.clearHistory();
+                message = "All app data deleted successfully";
+            } catch (Exception e) {
+                Log.e(TAG, "Deleting history failed", e);
+                message = "Error deleting data: " + e.getMessage();
+            }
+            String done = message;
+            runOnUiThread(() -> {
+                deleteDataBtn.setEnabled(true);
+                Toast.makeText(app, done, Toast.LENGTH_LONG).show();
+            });
+        });
     }
 }
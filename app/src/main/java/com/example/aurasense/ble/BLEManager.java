@@ -15,14 +15,37 @@ import android.util.Log;
 
 import androidx.core.app.ActivityCompat;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class BLEManager {
 
     public interface BLECallback {
         void onConnected();
         void onDisconnected();
+        /**
+         * Legacy path: one JSON string per sample. Callbacks that also implement
+         * {@link SampleBatchListener} get decoded batches instead and never see this.
+         */
         void onDataReceived(String data);
+
+        // ---- Per-band variants; single-band consumers can ignore the address ----
+
+        default void onConnected(String deviceAddress) {
+            onConnected();
+        }
+
+        default void onDisconnected(String deviceAddress) {
+            onDisconnected();
+        }
     }
 
     private static final String TAG = "BLEManager";
@@ -31,13 +54,34 @@ public class BLEManager {
     public static final UUID CHARACTERISTIC_UUID = UUID.fromString("a0e6fc01-df5e-11ee-a506-0050569c1234");
     public static final UUID CLIENT_CHARACTERISTIC_CONFIG_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
 
+    // Largest ATT MTU Android will request; the band answers with what it supports
+    private static final int REQUESTED_MTU = 517;
+    private static final long DISCOVERY_TIMEOUT_MS = 10000L;
+
+    // ---- Reconnect policy ----
+    // After a loss the first attempts are direct connects (fast, but the stack gives up after
+    // a while); after that we hand the band to autoConnect, which waits for it indefinitely.
+    private static final int DIRECT_CONNECT_ATTEMPTS = 3;
+    private static final long CONNECT_TIMEOUT_MS = 10000L;   // direct connects only
+    private static final long SETUP_TIMEOUT_MS = 20000L;     // link up -> notifications enabled
+    private static final long STALE_MS = 6000L;             // streaming but no packet for this long
+    private static final Backoff BACKOFF = new Backoff(1000L, 30000L, 0.5);
+
+    // Fires GATT operation timeouts, reconnect attempts and staleness deadlines for every band
+    private static final ScheduledExecutorService GATT_TIMERS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "aura-gatt-timers");
+        t.setDaemon(true);
+        return t;
+    });
+
     private static BLEManager instance;
     private final Context context;
-    private BLECallback callback;
+    private volatile BLECallback callback;
+    private volatile SampleBatchListener sampleListener;
     private final BluetoothAdapter bluetoothAdapter;
-    private BluetoothGatt bluetoothGatt;
 
-    private final StringBuilder bleBuffer = new StringBuilder();
+    // One GATT connection and one ingest pipeline per band, keyed by device address
+    private final Map<String, DeviceSession> sessions = new ConcurrentHashMap<>();
 
     // Remember last device for reconnect attempts
     private String lastKnownDeviceAddress = null;
@@ -53,193 +97,481 @@ public class BLEManager {
 
     private BLEManager(Context context, BLECallback callback) {
         this.context = context;
-        this.callback = callback;
+        setCallback(callback);
         BluetoothManager bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
         this.bluetoothAdapter = bluetoothManager.getAdapter();
     }
 
     public void setCallback(BLECallback callback) {
         this.callback = callback;
+        this.sampleListener = callback == null ? null
+                : callback instanceof SampleBatchListener ? (SampleBatchListener) callback
+                : new LegacyCallbackAdapter(callback);
     }
 
+    /**
+     * Adds a band and connects to it right away. Other bands stay connected; if this band
+     * already has a session, its link is restarted.
+     */
     public void connectToDevice(BluetoothDevice device) {
         if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "Permission denied: BLUETOOTH_CONNECT");
             return;
         }
 
-        if (bluetoothGatt != null) {
-            Log.w(TAG, "Closing stale GATT connection before reconnecting...");
-            bluetoothGatt.disconnect();
-            bluetoothGatt.close();
-            bluetoothGatt = null;
-        }
-
         if (device == null) {
             Log.e(TAG, "connectToDevice: device is null");
-            if (callback != null) callback.onDisconnected();
+            BLECallback cb = callback;
+            if (cb != null) cb.onDisconnected();
             return;
         }
 
-        // remember for reconnect
-        lastKnownDeviceAddress = device.getAddress();
+        String address = device.getAddress();
+        DeviceSession session = sessions.get(address);
+        if (session == null) {
+            session = new DeviceSession(address);
+            sessions.put(address, session);
+        }
 
-        Log.d(TAG, "Connecting to GATT server: " + device.getName() + " (" + device.getAddress() + ")");
-        bluetoothGatt = device.connectGatt(context, true, gattCallback);  // autoConnect=true for stability
+        // remember for reconnect
+        lastKnownDeviceAddress = address;
 
-        if (bluetoothGatt == null) {
-            Log.e(TAG, "Failed to create GATT connection");
-            if (callback != null) callback.onDisconnected();
-        }
+        Log.d(TAG, "Connecting to GATT server: " + device.getName() + " (" + address + "), bands=" + sessions.size());
+        session.restart(device);
     }
 
+    /** Disconnects every band and tears the manager down. */
     public void disconnect() {
-        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
-            Log.e(TAG, "Permission denied: BLUETOOTH_CONNECT");
-            return;
-        }
-
-        if (bluetoothGatt != null) {
-            bluetoothGatt.disconnect();
-            bluetoothGatt.close();
-            bluetoothGatt = null;
+        for (DeviceSession session : sessions.values()) {
+            session.close();
         }
+        sessions.clear();
 
         instance = null;
-        bleBuffer.setLength(0);
     }
 
-    // Reconnect helper used by HomeActivity watchdog
+    public void disconnect(String deviceAddress) {
+        DeviceSession session = sessions.remove(deviceAddress);
+        if (session != null) session.close();
+    }
+
+    /**
+     * Makes sure every known band is connected or on its way. Safe to call as often as you
+     * like: bands that are connecting, streaming or waiting out a backoff are left alone.
+     */
     public void requestReconnect() {
         if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "requestReconnect: missing BLUETOOTH_CONNECT permission");
             return;
         }
 
+        if (!sessions.isEmpty()) {
+            for (DeviceSession session : sessions.values()) session.start();
+            return;
+        }
+
+        // No session yet (e.g. process restarted): use the last band that streamed, even from
+        // an earlier run, so a cold start connects without scanning
+        String address = lastKnownDeviceAddress;
+        if (address == null) {
+            List<String> known = BandScanner.getKnownAddresses(context);
+            if (!known.isEmpty()) address = known.get(0);
+        }
+        if (address != null && bluetoothAdapter != null) {
+            Log.d(TAG, "requestReconnect: reconnecting to " + address);
+            connectToDevice(bluetoothAdapter.getRemoteDevice(address));
+            return;
+        }
+
+        Log.w(TAG, "requestReconnect: no session and no known band — cannot reconnect automatically");
+    }
+
+    public ConnectionState getConnectionState(String deviceAddress) {
+        DeviceSession session = sessions.get(deviceAddress);
+        return session != null ? session.getState() : ConnectionState.IDLE;
+    }
+
+    public List<String> getDeviceAddresses() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    public int getConnectedCount() {
+        int n = 0;
+        for (DeviceSession session : sessions.values()) {
+            if (session.getState() == ConnectionState.STREAMING) n++;
+        }
+        return n;
+    }
+
+    /** One line of ingest metrics per band, for logging. */
+    public String describePipelines() {
+        StringBuilder sb = new StringBuilder();
+        for (DeviceSession session : sessions.values()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(session.pipeline).append(' ').append(session.getState()).append(" phy=").append(session.phy == BluetoothDevice.PHY_LE_2M ? "2M" : "1M")
+                    .append('\n').append(session.timeline).append(' ').append(session.operations);
+        }
+        return sb.toString();
+    }
+
+    // Parse worker of the band that produced the batch
+    private void dispatchBatch(String address, SampleBatch batch) {
+        SampleBatchListener listener = sampleListener;
+        if (listener == null) return;
         try {
-            // If we still have a GATT, most stacks allow calling connect() to re-establish
-            if (bluetoothGatt != null) {
-                Log.d(TAG, "requestReconnect: attempting bluetoothGatt.connect()");
-                boolean started = bluetoothGatt.connect();
-                Log.d(TAG, "requestReconnect: bluetoothGatt.connect() started=" + started);
-                return;
+            listener.onSampleBatch(address, batch);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to pass samples from " + address + " to callback", e);
+        }
+    }
+
+    private final class DeviceSession {
+        final String address;
+        final BandPipeline pipeline;
+        volatile BluetoothGatt gatt;
+        volatile int phy = BluetoothDevice.PHY_LE_1M;
+        final GattOperationQueue operations;
+        final ConnectionTimeline timeline = new ConnectionTimeline();
+
+        // ---- State machine; guarded by this ----
+        private ConnectionState state = ConnectionState.IDLE;
+        private BluetoothDevice device;
+        private int attempt;
+        private long generation;               // bumped on every transition; stale timers check it
+        private ScheduledFuture<?> timer;
+        private volatile long lastPacketNanos;  // written per notification, read by the stale deadline
+
+        DeviceSession(String address) {
+            this.address = address;
+            this.pipeline = new BandPipeline(address, this::onSamples);
+            this.operations = new GattOperationQueue("gatt-" + address, GATT_TIMERS);
+        }
+
+        synchronized ConnectionState getState() {
+            return state;
+        }
+
+        /** Connect now from whatever state we're in (user picked this band). */
+        synchronized void restart(BluetoothDevice device) {
+            this.device = device;
+            attempt = 0;
+            connectNow();
+        }
+
+        /** Connect if idle; anything already in progress or scheduled is left to run. */
+        synchronized void start() {
+            if (state != ConnectionState.IDLE) return;
+            attempt = 0;
+            connectNow();
+        }
+
+        void close() {
+            synchronized (this) {
+                transition(ConnectionState.IDLE);
+                closeGatt();
             }
+            pipeline.shutdown();
+        }
 
-            // Otherwise, use last known MAC if we have it
-            if (lastKnownDeviceAddress != null && bluetoothAdapter != null) {
-                BluetoothDevice dev = bluetoothAdapter.getRemoteDevice(lastKnownDeviceAddress);
-                if (dev != null) {
-                    Log.d(TAG, "requestReconnect: reconnecting to " + lastKnownDeviceAddress);
-                    bluetoothGatt = dev.connectGatt(context, true, gattCallback);
-                    return;
-                }
+        private void transition(ConnectionState next) {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
             }
+            generation++;
+            if (state != next) Log.d(TAG, address + " " + state + " -> " + next);
+            state = next;
+        }
 
-            Log.w(TAG, "requestReconnect: no GATT and no lastKnownDeviceAddress — cannot reconnect automatically");
+        private void schedule(long delayMs, Runnable task) {
+            timer = GATT_TIMERS.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
 
-        } catch (Throwable t) {
-            Log.w(TAG, "requestReconnect failed", t);
+        private void closeGatt() {
+            operations.clear();
+            BluetoothGatt g = gatt;
+            gatt = null;
+            if (g != null && hasConnectPermission()) {
+                g.disconnect();
+                g.close();
+            }
         }
-    }
 
-    private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+        // One attempt; exactly one GATT client exists afterwards
+        private void connectNow() {
+            closeGatt();
+            if (!hasConnectPermission() || (device == null && bluetoothAdapter == null)) {
+                Log.e(TAG, address + ": cannot connect (permission or adapter missing)");
+                transition(ConnectionState.IDLE);
+                return;
+            }
+            if (device == null) device = bluetoothAdapter.getRemoteDevice(address);
+
+            boolean direct = attempt < DIRECT_CONNECT_ATTEMPTS;
+            transition(ConnectionState.CONNECTING);
+            timeline.begin();
+            Log.d(TAG, address + ": connect attempt " + attempt + (direct ? " (direct)" : " (autoConnect)"));
+            gatt = device.connectGatt(context, !direct, gattCallback, BluetoothDevice.TRANSPORT_LE);
+            if (gatt == null) {
+                Log.e(TAG, "Failed to create GATT connection");
+                linkFailed(generation, "connectGatt returned null");
+                return;
+            }
+            if (direct) {
+                final long gen = generation;
+                schedule(CONNECT_TIMEOUT_MS, () -> linkFailed(gen, "connect timed out"));
+            }
+        }
 
-        @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) return;
+        private void linkUp(BluetoothGatt g) {
+            final long gen;
+            synchronized (this) {
+                if (g != gatt || state != ConnectionState.CONNECTING) return;
+                transition(ConnectionState.DISCOVERING);
+                gen = generation;
+                schedule(SETUP_TIMEOUT_MS, () -> linkFailed(gen, "setup timed out"));
+            }
+            timeline.mark(ConnectionTimeline.Phase.CONNECT);
+            pipeline.requestReset(); // drop any half frame from the previous link
+            pipeline.getThroughput().setMtu(ThroughputMeter.DEFAULT_MTU);
+            if (!hasConnectPermission()) return;
+
+            // Shortest connection interval while streaming, and 2M PHY when both ends have it
+            g.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+            if (bluetoothAdapter != null && bluetoothAdapter.isLe2MPhySupported()) {
+                g.setPreferredPhy(BluetoothDevice.PHY_LE_2M_MASK, BluetoothDevice.PHY_LE_2M_MASK,
+                        BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+            }
+            Log.d(TAG, "Connected to GATT successfully. Starting setup...");
+            startSetup(g, gen);
+        }
 
-            Log.d(TAG, "onConnectionStateChange: status=" + status + ", newState=" + newState);
+        private void streaming(BluetoothGatt g) {
+            synchronized (this) {
+                if (g != gatt || state != ConnectionState.DISCOVERING) return;
+                transition(ConnectionState.STREAMING);
+                attempt = 0;
+                lastPacketNanos = System.nanoTime();
+                final long gen = generation;
+                schedule(STALE_MS, () -> checkStale(gen));
+            }
+            BandScanner.rememberAddress(context, address);
+            BLECallback cb = callback;
+            if (cb != null) cb.onConnected(address);
+        }
 
-            if (newState == android.bluetooth.BluetoothProfile.STATE_CONNECTED) {
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    Log.d(TAG, "Connected to GATT successfully. Requesting MTU...");
-                    gatt.requestMtu(512);
-                } else {
-                    Log.e(TAG, "Connected with error status: " + status);
-                    if (callback != null) callback.onDisconnected();
+        // Deadline, not a poll: re-arms itself for lastPacket + STALE_MS until it finds a gap
+        private void checkStale(long gen) {
+            synchronized (this) {
+                if (gen != generation) return;
+                long idleMs = (System.nanoTime() - lastPacketNanos) / 1_000_000L;
+                if (idleMs < STALE_MS) {
+                    schedule(STALE_MS - idleMs, () -> checkStale(gen));
+                    return;
                 }
-            } else if (newState == android.bluetooth.BluetoothProfile.STATE_DISCONNECTED) {
-                Log.e(TAG, "Disconnected. Status: " + status);
-                if (callback != null) callback.onDisconnected();
             }
+            linkFailed(gen, "no data for " + STALE_MS + "ms");
         }
 
-        @Override
-        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                Log.d(TAG, "MTU changed to: " + mtu);
-            } else {
-                Log.w(TAG, "MTU change failed. Using default MTU.");
+        /** The current attempt or link is dead: tear it down and schedule the next attempt. */
+        private void linkFailed(long gen, String reason) {
+            boolean wasStreaming;
+            synchronized (this) {
+                if (gen != generation || state == ConnectionState.IDLE) return;
+                wasStreaming = state == ConnectionState.STREAMING;
+                closeGatt();
+                long delay = BACKOFF.delayMs(attempt);
+                Log.w(TAG, address + ": " + reason + "; next attempt in " + delay + "ms");
+                transition(ConnectionState.BACKOFF);
+                final long next = generation;
+                schedule(delay, () -> {
+                    synchronized (DeviceSession.this) {
+                        if (next != generation) return;
+                        attempt++;
+                        connectNow();
+                    }
+                });
+            }
+            if (wasStreaming) {
+                BLECallback cb = callback;
+                if (cb != null) cb.onDisconnected(address);
             }
+        }
 
-            if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED) {
-                gatt.discoverServices();
+        // Parse worker
+        private void onSamples(String address, SampleBatch batch) {
+            if (timeline.isAwaitingFirstSample()) {
+                timeline.mark(ConnectionTimeline.Phase.FIRST_SAMPLE);
+                Log.i(TAG, address + " " + timeline);
             }
+            dispatchBatch(address, batch);
+        }
+
+        /** As {@link #linkFailed(long, String)}, for whatever link {@code g} is still the client of. */
+        private void linkFailed(BluetoothGatt g, String reason) {
+            long gen;
+            synchronized (this) {
+                if (g != gatt) return; // an older client; its link is already gone
+                gen = generation;
+            }
+            linkFailed(gen, reason);
+        }
+
+        private boolean hasConnectPermission() {
+            return ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED;
         }
 
-        @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) return;
+        // ---- Setup sequence, one queued GATT operation at a time ----
+        // MTU -> discovery -> CCCD -> format -> max payload. Only the CCCD is required;
+        // everything else degrades to defaults (23-byte MTU, JSON) when it fails.
+        // Failures carry the generation the setup started in, so a completion arriving after
+        // the link was replaced cannot tear down the new one.
+
+        private void startSetup(BluetoothGatt gatt, long gen) {
+            operations.enqueue("requestMtu", GattOperationQueue.Kind.REQUEST_MTU,
+                    () -> hasConnectPermission() && gatt.requestMtu(REQUESTED_MTU),
+                    (ok, status) -> {
+                        if (!ok) Log.w(TAG, "MTU change failed (" + status + "). Using default MTU.");
+                        timeline.mark(ConnectionTimeline.Phase.MTU);
+                    });
+            operations.enqueue("discoverServices", GattOperationQueue.Kind.DISCOVER_SERVICES,
+                    () -> hasConnectPermission() && gatt.discoverServices(),
+                    (ok, status) -> {
+                        Log.d(TAG, "Services discovered: " + ok);
+                        timeline.mark(ConnectionTimeline.Phase.DISCOVERY);
+                        if (ok) enableNotifications(gatt, gen);
+                        else linkFailed(gen, "service discovery failed");
+                    }, DISCOVERY_TIMEOUT_MS);
+        }
 
-            Log.d(TAG, "Services discovered: " + (status == BluetoothGatt.GATT_SUCCESS));
+        private void enableNotifications(BluetoothGatt gatt, long gen) {
+            if (!hasConnectPermission()) return;
             BluetoothGattService service = gatt.getService(SERVICE_UUID);
-            if (service != null) {
-                BluetoothGattCharacteristic characteristic = service.getCharacteristic(CHARACTERISTIC_UUID);
-                if (characteristic != null) {
-                    gatt.setCharacteristicNotification(characteristic, true);
-                    BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
-                    if (descriptor != null) {
-                        descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
-                        gatt.writeDescriptor(descriptor);
-                        Log.d(TAG, "Notifications enabled.");
-
-                        // Trigger onConnected() right after successful descriptor write like old version
-                        if (callback != null) callback.onConnected();
-                    } else {
-                        Log.e(TAG, "Descriptor not found.");
-                    }
-                } else {
-                    Log.e(TAG, "Characteristic not found.");
-                }
-            } else {
+            if (service == null) {
                 Log.e(TAG, "Service not found.");
+                linkFailed(gen, "service not found");
+                return;
             }
-        }
+            BluetoothGattCharacteristic characteristic = service.getCharacteristic(CHARACTERISTIC_UUID);
+            if (characteristic == null) {
+                Log.e(TAG, "Characteristic not found.");
+                linkFailed(gen, "characteristic not found");
+                return;
+            }
+            BluetoothGattDescriptor descriptor = characteristic.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG_UUID);
+            if (descriptor == null) {
+                Log.e(TAG, "Descriptor not found.");
+                linkFailed(gen, "descriptor not found");
+                return;
+            }
+            gatt.setCharacteristicNotification(characteristic, true);
+            operations.enqueue("enableNotifications", GattOperationQueue.Kind.WRITE_DESCRIPTOR, () -> {
+                if (!hasConnectPermission()) return false;
+                descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+                return gatt.writeDescriptor(descriptor);
+            }, (ok, status) -> {
+                if (!ok) {
+                    Log.w(TAG, "Descriptor write failed: " + status);
+                    linkFailed(gen, "could not enable notifications");
+                    return;
+                }
+                Log.d(TAG, "Notifications enabled.");
+                timeline.mark(ConnectionTimeline.Phase.CCCD);
 
-        @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
-            if (ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_CONNECT) != PackageManager.PERMISSION_GRANTED) return;
+                // Only now is the band actually streaming to us
+                streaming(gatt);
+                requestBatchedFormat(gatt, service);
+            });
+        }
 
-            if (CHARACTERISTIC_UUID.equals(characteristic.getUuid())) {
-                String fragment = new String(characteristic.getValue());
-                Log.d(TAG, "BLE Fragment Received: " + fragment);
+        // Ask the band to switch to batched binary frames. Older firmware has no control
+        // characteristic (or no batched format) and keeps sending JSON, which we still decode.
+        private void requestBatchedFormat(BluetoothGatt gatt, BluetoothGattService service) {
+            BluetoothGattCharacteristic control = service.getCharacteristic(FrameProtocol.CONTROL_CHARACTERISTIC_UUID);
+            if (control == null) {
+                Log.d(TAG, "No control characteristic; staying on JSON.");
+                return;
+            }
+            writeControl(gatt, control, "setFormat",
+                    new byte[]{ FrameProtocol.CMD_SET_FORMAT, FrameProtocol.FORMAT_BINARY_V2 },
+                    ok -> {
+                        Log.d(TAG, "Requested batched frame format, ok=" + ok);
+                        if (!ok) return;
+                        // Format accepted: tell the band how much fits in one notification so
+                        // it packs each batch up to the negotiated MTU
+                        int maxPayload = pipeline.getThroughput().getMaxPayload();
+                        writeControl(gatt, control, "setMaxPayload", new byte[]{ FrameProtocol.CMD_SET_MAX_PAYLOAD,
+                                (byte) (maxPayload & 0xFF), (byte) (maxPayload >> 8) },
+                                sent -> Log.d(TAG, "Sent max payload " + maxPayload + ", ok=" + sent));
+                    });
+        }
 
-                bleBuffer.append(fragment);
-                String bufferStr = bleBuffer.toString();
+        private void writeControl(BluetoothGatt gatt, BluetoothGattCharacteristic control, String name,
+                                  byte[] value, Consumer<Boolean> done) {
+            operations.enqueue(name, GattOperationQueue.Kind.WRITE_CHARACTERISTIC, () -> {
+                if (!hasConnectPermission()) return false;
+                control.setValue(value);
+                control.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+                return gatt.writeCharacteristic(control);
+            }, (ok, status) -> {
+                if (!ok) Log.w(TAG, "Control write " + name + " failed: " + status);
+                done.accept(ok);
+            });
+        }
 
-                int start = bufferStr.indexOf('{');
-                int end = bufferStr.indexOf('}');
+        final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
 
-                while (start != -1 && end > start) {
-                    String fullJson = bufferStr.substring(start, end + 1);
-                    Log.d(TAG, "Full JSON Detected: " + fullJson);
+            @Override
+            public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+                Log.d(TAG, address + " onConnectionStateChange: status=" + status + ", newState=" + newState);
 
-                    if (callback != null) {
-                        try {
-                            callback.onDataReceived(fullJson.trim());
-                        } catch (Exception e) {
-                            Log.e(TAG, "Failed to pass JSON to callback", e);
-                        }
-                    }
+                if (newState == android.bluetooth.BluetoothProfile.STATE_CONNECTED && status == BluetoothGatt.GATT_SUCCESS) {
+                    linkUp(gatt);
+                } else {
+                    // Error status or a disconnect; ignored unless gatt is still the current client
+                    linkFailed(gatt, "disconnected (status " + status + ")");
+                }
+            }
 
-                    bufferStr = bufferStr.substring(end + 1);
-                    start = bufferStr.indexOf('{');
-                    end = bufferStr.indexOf('}');
+            @Override
+            public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    Log.d(TAG, "MTU changed to: " + mtu);
+                    pipeline.getThroughput().setMtu(mtu);
                 }
+                operations.complete(GattOperationQueue.Kind.REQUEST_MTU, status);
+            }
 
-                bleBuffer.setLength(0);
-                bleBuffer.append(bufferStr);
+            @Override
+            public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+                Log.d(TAG, address + " PHY tx=" + txPhy + " rx=" + rxPhy + " status=" + status);
+                if (status == BluetoothGatt.GATT_SUCCESS) phy = rxPhy;
             }
-        }
-    };
+
+            @Override
+            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+                operations.complete(GattOperationQueue.Kind.DISCOVER_SERVICES, status);
+            }
+
+            @Override
+            public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+                operations.complete(GattOperationQueue.Kind.WRITE_DESCRIPTOR, status);
+            }
+
+            @Override
+            public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+                operations.complete(GattOperationQueue.Kind.WRITE_CHARACTERISTIC, status);
+            }
+
+            @Override
+            public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+                if (CHARACTERISTIC_UUID.equals(characteristic.getUuid())) {
+                    byte[] value = characteristic.getValue(); // already a private copy
+                    if (value == null) return;
+                    lastPacketNanos = System.nanoTime(); // pushes the stale deadline out
+                    pipeline.submit(value);
+                }
+            }
+        };
+    }
 }
@@ -0,0 +1,34 @@
+package com.example.aurasense.ble;
+
+import java.util.Random;
+
+/**
+ * Exponential reconnect delays with jitter: attempt n waits about base * 2^(n-1), capped,
+ * minus a random share so bands that dropped together don't retry in lockstep.
+ */
+public class Backoff {
+
+    private final long baseMs;
+    private final long maxMs;
+    private final double jitter;
+    private final Random random;
+
+    /** @param jitter share of each delay (0..1) that is randomized away. */
+    public Backoff(long baseMs, long maxMs, double jitter) {
+        this(baseMs, maxMs, jitter, new Random());
+    }
+
+    public Backoff(long baseMs, long maxMs, double jitter, Random random) {
+        this.baseMs = baseMs;
+        this.maxMs = maxMs;
+        this.jitter = jitter;
+        this.random = random;
+    }
+
+    /** Delay before attempt {@code attempt} (1-based); attempt 0 is immediate. */
+    public long delayMs(int attempt) {
+        if (attempt <= 0) return 0L;
+        long ceiling = Math.min(maxMs, baseMs << Math.min(attempt - 1, 20));
+        return ceiling - (long) (random.nextDouble() * jitter * ceiling);
+    }
+}
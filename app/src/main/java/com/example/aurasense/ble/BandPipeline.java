@@ -0,0 +1,114 @@
+package com.example.aurasense.ble;
+
+import com.example.aurasense.pipeline.BackpressurePolicy;
+import com.example.aurasense.pipeline.PipelineStage;
+
+/**
+ * Ingest path for one band: raw notifications are queued by the GATT thread and a dedicated
+ * parse worker runs them through this band's own {@link FrameAssembler} and decoder. Bands
+ * never share parse state, so one noisy link cannot corrupt or stall another.
+ *
+ * Every frame of a notification is decoded into one reused {@link SampleBatch}, which is
+ * handed to the listener once per notification. Frame sequence numbers are checked on the way:
+ * duplicates are dropped and the first row after lost frames carries {@link SampleBatch#FLAG_GAP}.
+ * Arrival time is taken on the GATT thread and travels with the notification, so time spent
+ * in the parse queue does not shift the samples' timestamps.
+ */
+public class BandPipeline {
+
+
+    public static final int PARSE_QUEUE_CAPACITY = 256;
+    public static final BackpressurePolicy PARSE_POLICY = BackpressurePolicy.DROP_OLDEST;
+
+    private final String address;
+    private final SampleBatchListener listener;
+    private final SampleBatch batch = new SampleBatch();
+    private final FrameAssembler assembler = new FrameAssembler(this::onFrame);
+    private final PipelineStage<Notification> parseStage;
+    private final ThroughputMeter throughput = new ThroughputMeter();
+    private final SequenceTracker sequence = new SequenceTracker();
+    private volatile boolean resetPending = false;
+    private long receivedAtMs; // of the notification being parsed
+    private volatile long undecodable;
+
+    public BandPipeline(String address, SampleBatchListener listener) {
+        this(address, PARSE_QUEUE_CAPACITY, PARSE_POLICY, listener);
+    }
+
+    public BandPipeline(String address, int capacity, BackpressurePolicy policy, SampleBatchListener listener) {
+        this.address = address;
+        this.listener = listener;
+        this.parseStage = PipelineStage.onNewThread("aura-ble-parse-" + address, capacity, policy, this::onNotification);
+    }
+
+    private static final class Notification {
+        final byte[] value;
+        final long receivedAtMs;
+
+        Notification(byte[] value, long receivedAtMs) {
+            this.value = value;
+            this.receivedAtMs = receivedAtMs;
+        }
+    }
+
+    /** GATT callback thread: never parses, only stamps, meters and enqueues. */
+    public boolean submit(byte[] notification) {
+        long now = System.currentTimeMillis();
+        throughput.record(notification.length);
+        return parseStage.offer(new Notification(notification, now));
+    }
+
+    /** Drop any half frame left over from a previous link before the next notification. */
+    public void requestReset() {
+        resetPending = true;
+    }
+
+    public void shutdown() {
+        parseStage.shutdown();
+    }
+
+    private void onNotification(Notification n) {
+        if (resetPending) {
+            resetPending = false;
+            assembler.reset();
+            sequence.reset();
+        }
+        batch.clear();
+        receivedAtMs = n.receivedAtMs;
+        assembler.feed(n.value);
+        if (!batch.isEmpty()) listener.onSampleBatch(address, batch);
+    }
+
+    // Called by the assembler once per complete frame inside the current notification
+    private void onFrame(byte[] buf, int off, int len, boolean binary) {
+        int first = batch.size();
+        boolean ok = binary
+                ? FrameDecoder.decodeBinary(buf, off, len, batch, receivedAtMs)
+                : FrameDecoder.decodeJson(buf, off, len, batch, receivedAtMs);
+        if (!ok) {
+            undecodable++;
+            return;
+        }
+        int seq = batch.seq[first];
+        if (seq < 0) return; // JSON from firmware without sequence numbers
+
+        int missed = sequence.observe(seq);
+        if (missed == SequenceTracker.DUPLICATE) batch.truncate(first);
+        else if (missed != 0) batch.markGap(first);
+    }
+
+    public String getAddress() { return address; }
+    public PipelineStage<?> getParseStage() { return parseStage; }
+    public ThroughputMeter getThroughput() { return throughput; }
+    public SequenceTracker getSequence() { return sequence; }
+    public long getFrameCount() { return assembler.getFrameCount(); }
+    public long getResyncCount() { return assembler.getResyncCount(); }
+    public long getDroppedByteCount() { return assembler.getDroppedByteCount(); }
+    public long getUndecodableCount() { return undecodable; }
+
+    @Override
+    public String toString() {
+        return parseStage + " " + throughput + " " + sequence + " frames=" + getFrameCount() + " resyncs=" + getResyncCount()
+                + " droppedBytes=" + getDroppedByteCount() + " undecodable=" + undecodable;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.aurasense.ble;
+
+import android.Manifest;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothManager;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.util.Log;
+
+import androidx.core.app.ActivityCompat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds advertising bands with a hardware-filtered LE scan on {@link BLEManager#SERVICE_UUID}, so
+ * bands don't have to be paired in system settings first. The scan runs in low-latency mode
+ * for a bounded window and ends early once the first band has been heard for a short settle
+ * period; results come back strongest signal first. Every band we connect to is remembered so
+ * the app can reconnect after a restart without scanning.
+ */
+public class BandScanner {
+
+    public interface Listener {
+        /** Main thread. Strongest first; empty if nothing was found or the scan failed. */
+        void onScanFinished(List<Result> bands);
+    }
+
+    public static final class Result {
+        public final BluetoothDevice device;
+        public final String address;
+        public final String name;
+        /** Smoothed RSSI in dBm. */
+        public final int rssi;
+        /** Seen before (we connected to it in an earlier session). */
+        public final boolean known;
+
+        Result(BluetoothDevice device, String name, int rssi, boolean known) {
+            this.device = device;
+            this.address = device.getAddress();
+            this.name = name;
+            this.rssi = rssi;
+            this.known = known;
+        }
+    }
+
+    private static final String TAG = "BandScanner";
+
+    public static final long MAX_SCAN_WINDOW_MS = 8000L;
+    // Once a band shows up, listen this much longer so nearby bands can be compared by RSSI
+    public static final long SETTLE_MS = 1000L;
+
+    private static final String PREFS = "AuraBands";
+    private static final String KEY_ADDRESSES = "known_addresses";
+    private static final int MAX_KNOWN = 8;
+    private static final float RSSI_SMOOTHING = 0.5f;
+
+    private final Context context;
+    private final BluetoothAdapter adapter;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Main thread only
+    private final Map<String, Sighting> sightings = new LinkedHashMap<>();
+    private BluetoothLeScanner scanner;
+    private Listener listener;
+    private boolean settling;
+
+    private static final class Sighting {
+        final BluetoothDevice device;
+        String name;
+        float rssi;
+
+        Sighting(BluetoothDevice device, String name, int rssi) {
+            this.device = device;
+            this.name = name;
+            this.rssi = rssi;
+        }
+    }
+
+    public BandScanner(Context context) {
+        this.context = context.getApplicationContext();
+        BluetoothManager bluetoothManager = (BluetoothManager) this.context.getSystemService(Context.BLUETOOTH_SERVICE);
+        this.adapter = bluetoothManager != null ? bluetoothManager.getAdapter() : null;
+    }
+
+    /**
+     * Starts a scan; the listener is called exactly once when it ends.
+     * @return false if scanning is not possible right now (no permission, Bluetooth off).
+     */
+    public boolean start(Listener listener) {
+        if (scanner != null) stop();
+        if (!hasScanPermission()) {
+            Log.e(TAG, "Permission denied: BLUETOOTH_SCAN");
+            return false;
+        }
+        if (adapter == null || !adapter.isEnabled() || adapter.getBluetoothLeScanner() == null) {
+            Log.w(TAG, "Bluetooth LE scanner unavailable");
+            return false;
+        }
+
+        List<ScanFilter> filters = Collections.singletonList(new ScanFilter.Builder()
+                .setServiceUuid(new ParcelUuid(BLEManager.SERVICE_UUID))
+                .build());
+        ScanSettings settings = new ScanSettings.Builder()
+                .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                .setCallbackType(ScanSettings.CALLBACK_TYPE_ALL_MATCHES)
+                .setMatchMode(ScanSettings.MATCH_MODE_AGGRESSIVE)
+                .setReportDelay(0)
+                .build();
+
+        this.listener = listener;
+        sightings.clear();
+        settling = false;
+        scanner = adapter.getBluetoothLeScanner();
+        scanner.startScan(filters, settings, scanCallback);
+        handler.postDelayed(finish, MAX_SCAN_WINDOW_MS);
+        Log.d(TAG, "Scanning for bands (window " + MAX_SCAN_WINDOW_MS + "ms)");
+        return true;
+    }
+
+    /** Stops without reporting. */
+    public void stop() {
+        handler.removeCallbacks(finish);
+        if (scanner != null && hasScanPermission()) {
+            try {
+                scanner.stopScan(scanCallback);
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "stopScan: adapter already off");
+            }
+        }
+        scanner = null;
+        listener = null;
+    }
+
+    public boolean isScanning() {
+        return scanner != null;
+    }
+
+    private final Runnable finish = () -> {
+        Listener l = listener;
+        stop();
+        List<Result> ranked = rank();
+        Log.d(TAG, "Scan finished: " + ranked.size() + " band(s)");
+        if (l != null) l.onScanFinished(ranked);
+    };
+
+    private final ScanCallback scanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            BluetoothDevice device = result.getDevice();
+            String name = result.getScanRecord() != null ? result.getScanRecord().getDeviceName() : null;
+            Sighting s = sightings.get(device.getAddress());
+            if (s == null) {
+                sightings.put(device.getAddress(), new Sighting(device, name, result.getRssi()));
+            } else {
+                s.rssi += RSSI_SMOOTHING * (result.getRssi() - s.rssi);
+                if (name != null) s.name = name;
+            }
+            if (!settling) {
+                settling = true;
+                handler.removeCallbacks(finish);
+                handler.postDelayed(finish, SETTLE_MS);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "Scan failed: " + errorCode);
+            handler.removeCallbacks(finish);
+            handler.post(finish);
+        }
+    };
+
+    // Strongest first; a known band wins ties within a few dB
+    private List<Result> rank() {
+        List<String> known = getKnownAddresses(context);
+        List<Result> ranked = new ArrayList<>(sightings.size());
+        for (Sighting s : sightings.values()) {
+            ranked.add(new Result(s.device, s.name, Math.round(s.rssi), known.contains(s.device.getAddress())));
+        }
+        Collections.sort(ranked, (a, b) -> {
+            int ra = a.rssi + (a.known ? 3 : 0);
+            int rb = b.rssi + (b.known ? 3 : 0);
+            return Integer.compare(rb, ra);
+        });
+        return ranked;
+    }
+
+    private boolean hasScanPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return ActivityCompat.checkSelfPermission(context, Manifest.permission.BLUETOOTH_SCAN) == PackageManager.PERMISSION_GRANTED;
+        }
+        return ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    // ---- Known-band cache ----
+
+    /** Most recently connected first. */
+    public static List<String> getKnownAddresses(Context context) {
+        String joined = prefs(context).getString(KEY_ADDRESSES, "");
+        if (joined.isEmpty()) return new ArrayList<>();
+        return new ArrayList<>(Arrays.asList(joined.split(",")));
+    }
+
+    public static void rememberAddress(Context context, String address) {
+        List<String> known = getKnownAddresses(context);
+        known.remove(address);
+        known.add(0, address);
+        while (known.size() > MAX_KNOWN) known.remove(known.size() - 1);
+        prefs(context).edit().putString(KEY_ADDRESSES, String.join(",", known)).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
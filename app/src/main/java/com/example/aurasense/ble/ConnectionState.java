@@ -0,0 +1,18 @@
+package com.example.aurasense.ble;
+
+/**
+ * Where one band's link is. {@link BLEManager} owns every transition; exactly one GATT
+ * client exists per band outside IDLE and BACKOFF, so reconnects never overlap.
+ */
+public enum ConnectionState {
+    /** Not connected and not trying (never started, or disconnected on request). */
+    IDLE,
+    /** connectGatt issued, waiting for the link. */
+    CONNECTING,
+    /** Link up; MTU, discovery and notification setup in progress. */
+    DISCOVERING,
+    /** Notifications enabled and data flowing; a staleness deadline is armed. */
+    STREAMING,
+    /** Link lost or attempt failed; the next attempt is scheduled. */
+    BACKOFF
+}
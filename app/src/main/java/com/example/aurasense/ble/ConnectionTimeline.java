@@ -0,0 +1,62 @@
+package com.example.aurasense.ble;
+
+/**
+ * Wall time of each connection-setup phase for one band, from the connect call to the first
+ * decoded sample. Phases are marked in order as the GATT callbacks arrive; a new connect
+ * attempt starts a fresh timeline.
+ */
+public class ConnectionTimeline {
+
+    public enum Phase { CONNECT, MTU, DISCOVERY, CCCD, FIRST_SAMPLE }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] markNanos = new long[PHASES.length];
+    private volatile long startNanos;
+    private volatile boolean awaitingFirstSample;
+
+    /** Connect requested (connectGatt or gatt.connect()). */
+    public synchronized void begin() {
+        startNanos = System.nanoTime();
+        for (int i = 0; i < markNanos.length; i++) markNanos[i] = 0L;
+        awaitingFirstSample = true;
+    }
+
+    public synchronized void mark(Phase phase) {
+        if (startNanos == 0L || markNanos[phase.ordinal()] != 0L) return;
+        markNanos[phase.ordinal()] = System.nanoTime();
+        if (phase == Phase.FIRST_SAMPLE) awaitingFirstSample = false;
+    }
+
+    /** Cheap check for the notification hot path. */
+    public boolean isAwaitingFirstSample() {
+        return awaitingFirstSample;
+    }
+
+    /** Duration of one phase, measured from the end of the previous one; -1 if not reached. */
+    public synchronized long getPhaseMillis(Phase phase) {
+        long end = markNanos[phase.ordinal()];
+        if (end == 0L) return -1L;
+        long begin = startNanos;
+        for (int i = phase.ordinal() - 1; i >= 0; i--) {
+            if (markNanos[i] != 0L) { begin = markNanos[i]; break; }
+        }
+        return (end - begin) / 1_000_000L;
+    }
+
+    public synchronized long getTimeToFirstSampleMillis() {
+        long end = markNanos[Phase.FIRST_SAMPLE.ordinal()];
+        return end == 0L ? -1L : (end - startNanos) / 1_000_000L;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("setup");
+        for (Phase phase : PHASES) {
+            sb.append(' ').append(phase.name().toLowerCase()).append('=');
+            long ms = getPhaseMillis(phase);
+            if (ms < 0) sb.append('-'); else sb.append(ms).append("ms");
+        }
+        return sb.append(" total=").append(getTimeToFirstSampleMillis()).append("ms").toString();
+    }
+}
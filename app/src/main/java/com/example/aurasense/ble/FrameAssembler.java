@@ -0,0 +1,213 @@
+package com.example.aurasense.ble;
+
+/**
+ * Reassembles frames from arbitrarily split BLE notifications.
+ *
+ * Bytes go into a fixed ring buffer; complete binary frames (SYNC ... CRC) and complete JSON
+ * objects (brace depth back to zero, braces inside strings ignored) are copied into a reused
+ * scratch array and handed to the listener. Nothing is allocated after construction, and work
+ * per byte is constant no matter how the sender fragments its packets.
+ *
+ * On garbage, a bad CRC or an oversized frame the assembler drops bytes until the next
+ * plausible frame start. Once a binary frame has arrived the link is known to be binary, and
+ * only SYNC counts as a frame start: a '{' inside a binary payload would otherwise start a
+ * JSON scan that holds back the frames behind it. Not thread-safe: feed from one thread.
+ */
+public class FrameAssembler {
+
+    public interface FrameListener {
+        /** {@code buf} is reused for the next frame; copy or decode before returning. */
+        void onFrame(byte[] buf, int off, int len, boolean binary);
+    }
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int MAX_FRAME_SIZE = 1024;
+
+    private final byte[] ring;
+    private final int mask;
+    private final byte[] scratch = new byte[MAX_FRAME_SIZE];
+    private final FrameListener listener;
+
+    private int head;   // index of the oldest byte
+    private int count;  // bytes currently buffered
+    private boolean binaryLink; // a binary frame has been seen since the last reset
+
+    // Incremental JSON scan state, relative to head
+    private int jsonScanned;
+    private int jsonDepth;
+    private boolean jsonInString;
+    private boolean jsonEscaped;
+
+    // ---- Counters ----
+    private long binaryFrames;
+    private long jsonFrames;
+    private long resyncs;
+    private long droppedBytes;
+    private long crcErrors;
+
+    public FrameAssembler(FrameListener listener) {
+        this(DEFAULT_CAPACITY, listener);
+    }
+
+    /** @param capacity ring size in bytes, rounded up to a power of two (at least MAX_FRAME_SIZE). */
+    public FrameAssembler(int capacity, FrameListener listener) {
+        int cap = Integer.highestOneBit(Math.max(capacity, MAX_FRAME_SIZE) - 1) << 1;
+        this.ring = new byte[cap];
+        this.mask = cap - 1;
+        this.listener = listener;
+    }
+
+    public void feed(byte[] data) {
+        feed(data, 0, data.length);
+    }
+
+    public void feed(byte[] data, int off, int len) {
+        while (len > 0) {
+            int free = ring.length - count;
+            if (free == 0) {
+                // Only reachable if a partial frame filled the whole ring; give it up.
+                discard(count);
+                resyncs++;
+                free = ring.length;
+            }
+            int n = Math.min(len, free);
+            int tail = (head + count) & mask;
+            int first = Math.min(n, ring.length - tail);
+            System.arraycopy(data, off, ring, tail, first);
+            if (n > first) System.arraycopy(data, off + first, ring, 0, n - first);
+            count += n;
+            off += n;
+            len -= n;
+            drain();
+        }
+    }
+
+    /** Forget any partial frame, e.g. after a reconnect. Counters are kept. */
+    public void reset() {
+        head = 0;
+        count = 0;
+        binaryLink = false;
+        resetJsonScan();
+    }
+
+    private void drain() {
+        while (count > 0) {
+            byte b = peek(0);
+            if (b == FrameProtocol.SYNC) {
+                if (!tryBinary()) return;
+            } else if (b == '{' && !binaryLink) {
+                if (!tryJson()) return;
+            } else {
+                skipGarbage();
+            }
+        }
+    }
+
+    /** @return false if more bytes are needed. */
+    private boolean tryBinary() {
+        if (count < FrameProtocol.HEADER_SIZE) return false;
+        int payloadLen = (peek(2) & 0xFF) | ((peek(3) & 0xFF) << 8);
+        int frameLen = FrameProtocol.OVERHEAD + payloadLen;
+        if (peek(1) == 0 || frameLen > MAX_FRAME_SIZE) {
+            resync();
+            return true;
+        }
+        if (count < frameLen) return false;
+
+        copyOut(frameLen);
+        int crc = FrameProtocol.crc8(scratch, 1, frameLen - 2);
+        if (crc != (scratch[frameLen - 1] & 0xFF)) {
+            crcErrors++;
+            resync();
+            return true;
+        }
+        consume(frameLen);
+        binaryFrames++;
+        binaryLink = true;
+        listener.onFrame(scratch, 0, frameLen, true);
+        return true;
+    }
+
+    /** @return false if more bytes are needed. */
+    private boolean tryJson() {
+        while (jsonScanned < count) {
+            byte c = peek(jsonScanned++);
+            if (jsonInString) {
+                if (jsonEscaped) jsonEscaped = false;
+                else if (c == '\\') jsonEscaped = true;
+                else if (c == '"') jsonInString = false;
+            } else if (c == '"') {
+                jsonInString = true;
+            } else if (c == '{') {
+                jsonDepth++;
+            } else if (c == '}' && --jsonDepth == 0) {
+                int len = jsonScanned;
+                copyOut(len);
+                consume(len);
+                jsonFrames++;
+                listener.onFrame(scratch, 0, len, false);
+                return true;
+            }
+            if (jsonScanned >= MAX_FRAME_SIZE) {
+                resync();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void skipGarbage() {
+        int n = 0;
+        while (n < count) {
+            byte b = peek(n);
+            if (b == FrameProtocol.SYNC || (b == '{' && !binaryLink)) break;
+            n++;
+        }
+        discard(n);
+        resyncs++;
+    }
+
+    /** Current frame start was bogus: discard one byte and look for the next start. */
+    private void resync() {
+        discard(1);
+        resyncs++;
+    }
+
+    private byte peek(int i) {
+        return ring[(head + i) & mask];
+    }
+
+    private void copyOut(int len) {
+        int first = Math.min(len, ring.length - head);
+        System.arraycopy(ring, head, scratch, 0, first);
+        if (len > first) System.arraycopy(ring, 0, scratch, first, len - first);
+    }
+
+    /** Remove bytes that were delivered as a frame. */
+    private void consume(int n) {
+        head = (head + n) & mask;
+        count -= n;
+        resetJsonScan();
+    }
+
+    /** Remove bytes that could not be delivered. */
+    private void discard(int n) {
+        consume(n);
+        droppedBytes += n;
+    }
+
+    private void resetJsonScan() {
+        jsonScanned = 0;
+        jsonDepth = 0;
+        jsonInString = false;
+        jsonEscaped = false;
+    }
+
+    public long getBinaryFrameCount() { return binaryFrames; }
+    public long getJsonFrameCount() { return jsonFrames; }
+    public long getFrameCount() { return binaryFrames + jsonFrames; }
+    public long getResyncCount() { return resyncs; }
+    public long getDroppedByteCount() { return droppedBytes; }
+    public long getCrcErrorCount() { return crcErrors; }
+    public int getBufferedByteCount() { return count; }
+}
@@ -0,0 +1,226 @@
+package com.example.aurasense.ble;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes band packets straight into {@link SampleBatch} columns without going through
+ * String/JSONObject. Handles both the binary frame format ({@link FrameProtocol}) and the
+ * legacy flat JSON object the firmware falls back to.
+ */
+public final class FrameDecoder {
+
+    private FrameDecoder() { }
+
+    public static boolean isBinary(byte[] buf, int off, int len) {
+        return len > 0 && buf[off] == FrameProtocol.SYNC;
+    }
+
+    /**
+     * Decode one complete binary frame starting at {@code off} and append its sample(s).
+     * A single-sample frame is stamped with {@code receivedAtMs}; the rows of a batched frame
+     * keep the band's spacing, with the newest row at {@code receivedAtMs}.
+     * @return false (and nothing appended) if the frame is truncated, has a bad CRC or an
+     * unknown version.
+     */
+    public static boolean decodeBinary(byte[] buf, int off, int len, SampleBatch out, long receivedAtMs) {
+        if (len < FrameProtocol.OVERHEAD || buf[off] != FrameProtocol.SYNC) return false;
+
+        int version = buf[off + 1] & 0xFF;
+        int payloadLen = FrameProtocol.readU16(buf, off + 2);
+        int frameLen = FrameProtocol.OVERHEAD + payloadLen;
+        if (len < frameLen) return false;
+
+        int crc = FrameProtocol.crc8(buf, off + 1, FrameProtocol.HEADER_SIZE - 1 + payloadLen);
+        if (crc != (buf[off + frameLen - 1] & 0xFF)) return false;
+
+        int seq = FrameProtocol.readU16(buf, off + 4);
+        int p = off + FrameProtocol.HEADER_SIZE;
+        if (version == FrameProtocol.VERSION_1) {
+            if (payloadLen < FrameProtocol.V1_PAYLOAD_SIZE) return false;
+            sample(buf, p, out, seq, receivedAtMs);
+            return true;
+        }
+        if (version == FrameProtocol.VERSION_2) {
+            if (payloadLen < FrameProtocol.V2_HEADER_SIZE) return false;
+            int count = buf[p + FrameProtocol.V2_OFF_COUNT] & 0xFF;
+            if (count == 0 || payloadLen < FrameProtocol.V2_HEADER_SIZE + count * FrameProtocol.V2_ROW_SIZE) return false;
+
+            int rows = p + FrameProtocol.V2_HEADER_SIZE;
+            int lastDt = FrameProtocol.readU16(buf, rows + (count - 1) * FrameProtocol.V2_ROW_SIZE + FrameProtocol.V2_ROW_DT);
+            for (int r = rows; r < rows + count * FrameProtocol.V2_ROW_SIZE; r += FrameProtocol.V2_ROW_SIZE) {
+                int dt = FrameProtocol.readU16(buf, r + FrameProtocol.V2_ROW_DT);
+                sample(buf, r + FrameProtocol.V2_ROW_SAMPLE, out, seq, receivedAtMs - (lastDt - dt));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // One v1-layout sample at p -> new row
+    private static void sample(byte[] buf, int p, SampleBatch out, int seq, long timestampMs) {
+        int i = out.appendRow();
+        out.timestampMs[i] = timestampMs;
+        out.seq[i] = seq;
+        out.bpm[i] = field(buf, p + FrameProtocol.OFF_BPM, FrameProtocol.SCALE_BPM);
+        out.hrv[i] = field(buf, p + FrameProtocol.OFF_HRV, FrameProtocol.SCALE_HRV);
+        out.temp[i] = field(buf, p + FrameProtocol.OFF_TEMP, FrameProtocol.SCALE_TEMP);
+        out.accX[i] = field(buf, p + FrameProtocol.OFF_ACC_X, FrameProtocol.SCALE_ACC);
+        out.accY[i] = field(buf, p + FrameProtocol.OFF_ACC_Y, FrameProtocol.SCALE_ACC);
+        out.accZ[i] = field(buf, p + FrameProtocol.OFF_ACC_Z, FrameProtocol.SCALE_ACC);
+        out.bvp[i] = field(buf, p + FrameProtocol.OFF_BVP, FrameProtocol.SCALE_BVP);
+        out.flags[i] = (byte) (buf[p + FrameProtocol.OFF_FLAGS] & FrameProtocol.FLAG_FINGER);
+    }
+
+    private static float field(byte[] buf, int off, float scale) {
+        short raw = FrameProtocol.readS16(buf, off);
+        return raw == FrameProtocol.MISSING ? Float.NaN : raw / scale;
+    }
+
+    // ---- JSON fallback ----
+
+    private static final byte[] K_BPM = ascii("bpm");
+    private static final byte[] K_HRV = ascii("hrv");
+    private static final byte[] K_TEMP = ascii("temp");
+    private static final byte[] K_ACC_X = ascii("acc_x");
+    private static final byte[] K_ACC_Y = ascii("acc_y");
+    private static final byte[] K_ACC_Z = ascii("acc_z");
+    private static final byte[] K_BVP = ascii("bvp");
+    private static final byte[] K_FINGER = ascii("finger");
+    private static final byte[] K_SEQ = ascii("seq");
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    public static boolean decodeJson(String json, SampleBatch out, long receivedAtMs) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return decodeJson(bytes, 0, bytes.length, out, receivedAtMs);
+    }
+
+    /**
+     * Parse the firmware's flat JSON object ({"bpm":72,"temp":33.1,...}) into one row.
+     * Unknown keys and non-numeric values are skipped; missing keys decode to NaN (finger to
+     * not worn).
+     * @return false (and nothing appended) if the bytes are not a JSON object.
+     */
+    public static boolean decodeJson(byte[] buf, int off, int len, SampleBatch out, long receivedAtMs) {
+        final int end = off + len;
+        int i = skipWs(buf, off, end);
+        if (i >= end || buf[i] != '{') return false;
+        int row = out.appendRow();
+        out.timestampMs[row] = receivedAtMs;
+        if (!parseObject(buf, i + 1, end, out, row)) {
+            out.removeLastRow();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean parseObject(byte[] buf, int i, int end, SampleBatch out, int row) {
+        while (i < end) {
+            i = skipWs(buf, i, end);
+            if (i >= end) return false;
+            byte c = buf[i];
+            if (c == '}') return true;
+            if (c == ',') { i++; continue; }
+            if (c != '"') return false;
+
+            int keyStart = ++i;
+            while (i < end && buf[i] != '"') i++;
+            if (i >= end) return false;
+            int keyLen = i - keyStart;
+            i = skipWs(buf, i + 1, end);
+            if (i >= end || buf[i] != ':') return false;
+            i = skipWs(buf, i + 1, end);
+            if (i >= end) return false;
+
+            int valueStart = i;
+            i = skipValue(buf, i, end);
+            if (i < 0) return false;
+            double v = parseNumber(buf, valueStart, i);
+
+            if (keyEquals(buf, keyStart, keyLen, K_BPM)) out.bpm[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_HRV)) out.hrv[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_TEMP)) out.temp[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_ACC_X)) out.accX[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_ACC_Y)) out.accY[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_ACC_Z)) out.accZ[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_BVP)) out.bvp[row] = (float) v;
+            else if (keyEquals(buf, keyStart, keyLen, K_FINGER)) out.flags[row] = (byte) (v == 1.0 ? SampleBatch.FLAG_FINGER : 0);
+            else if (keyEquals(buf, keyStart, keyLen, K_SEQ) && v >= 0 && v < SequenceTracker.SEQ_MODULUS) out.seq[row] = (int) v;
+        }
+        return false;
+    }
+
+    private static int skipWs(byte[] buf, int i, int end) {
+        while (i < end && (buf[i] == ' ' || buf[i] == '\n' || buf[i] == '\r' || buf[i] == '\t')) i++;
+        return i;
+    }
+
+    /** Returns the index just past a scalar value, or -1 for nested/unterminated values. */
+    private static int skipValue(byte[] buf, int i, int end) {
+        if (buf[i] == '"') {
+            i++;
+            while (i < end && buf[i] != '"') {
+                if (buf[i] == '\\') i++;
+                i++;
+            }
+            return i < end ? i + 1 : -1;
+        }
+        if (buf[i] == '{' || buf[i] == '[') return -1;
+        while (i < end && buf[i] != ',' && buf[i] != '}'
+                && buf[i] != ' ' && buf[i] != '\n' && buf[i] != '\r' && buf[i] != '\t') i++;
+        return i;
+    }
+
+    /** Parses [-]digits[.digits][e[+-]digits]; anything else (null, true, strings) is NaN. */
+    private static double parseNumber(byte[] buf, int i, int end) {
+        boolean neg = false;
+        if (i < end && buf[i] == '-') { neg = true; i++; }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean any = false;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+            if (digits < 18) { mantissa = mantissa * 10 + (buf[i] - '0'); digits++; } else scale--;
+            any = true;
+            i++;
+        }
+        if (i < end && buf[i] == '.') {
+            i++;
+            while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+                if (digits < 18) { mantissa = mantissa * 10 + (buf[i] - '0'); digits++; scale++; }
+                any = true;
+                i++;
+            }
+        }
+        if (!any) return Double.NaN;
+        int exp = 0;
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean expNeg = false;
+            if (i < end && (buf[i] == '+' || buf[i] == '-')) { expNeg = buf[i] == '-'; i++; }
+            while (i < end && buf[i] >= '0' && buf[i] <= '9') { exp = exp * 10 + (buf[i] - '0'); i++; }
+            if (expNeg) exp = -exp;
+        }
+        if (i != end) return Double.NaN;
+
+        int p = exp - scale;
+        double v = mantissa;
+        if (p > 0) v *= p < POW10.length ? POW10[p] : Math.pow(10, p);
+        else if (p < 0) v /= -p < POW10.length ? POW10[-p] : Math.pow(10, -p);
+        return neg ? -v : v;
+    }
+
+    private static boolean keyEquals(byte[] buf, int off, int len, byte[] key) {
+        if (len != key.length) return false;
+        for (int k = 0; k < len; k++) {
+            if (buf[off + k] != key[k]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.aurasense.ble;
+
+import java.util.UUID;
+
+/**
+ * Wire format shared with the band firmware (see extras/sensors/final_demo_sensor_code.ino).
+ *
+ * Binary frame, all multi-byte fields little-endian:
+ * <pre>
+ *   offset  size  field
+ *   0       1     SYNC (0xA5)
+ *   1       1     version
+ *   2       2     payload length (uint16)
+ *   4       2     sequence number (uint16, wraps)
+ *   6       n     payload
+ *   6+n     1     CRC-8 (poly 0x07) over bytes [1, 6+n)
+ * </pre>
+ *
+ * Version 1 payload is one sample of fixed-width int16 fields (scaled, MISSING = not measured)
+ * followed by a flags byte and a reserved byte.
+ *
+ * Version 2 payload batches the band's native-rate samples into one notification:
+ * <pre>
+ *   offset  size  field
+ *   0       1     row count
+ *   1       1     reserved
+ *   2       18*n  rows: uint16 ms since the first row, then the 16-byte v1 sample layout
+ * </pre>
+ *
+ * The band starts every connection in JSON mode; the app switches it to binary by writing
+ * {CMD_SET_FORMAT, format} to the control characteristic. Firmware without the control
+ * characteristic, or without the requested format, keeps sending JSON, which the decoder
+ * still understands.
+ */
+public final class FrameProtocol {
+
+    private FrameProtocol() { }
+
+    public static final UUID CONTROL_CHARACTERISTIC_UUID = UUID.fromString("a0e6fc02-df5e-11ee-a506-0050569c1234");
+
+    // ---- Control commands (app -> band) ----
+    public static final byte CMD_SET_FORMAT = 0x01;
+    public static final byte FORMAT_JSON = 0x00;
+    public static final byte FORMAT_BINARY_V1 = 0x01;
+    public static final byte FORMAT_BINARY_V2 = 0x02;
+    /** Followed by uint16 LE: largest notification the link can carry (negotiated MTU - 3). */
+    public static final byte CMD_SET_MAX_PAYLOAD = 0x02;
+
+    // ---- Frame layout ----
+    public static final byte SYNC = (byte) 0xA5;
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+    public static final int HEADER_SIZE = 6;
+    public static final int TRAILER_SIZE = 1;
+    public static final int OVERHEAD = HEADER_SIZE + TRAILER_SIZE;
+
+    // ---- Version 1 sample payload ----
+    public static final int V1_PAYLOAD_SIZE = 16;
+    public static final int OFF_BPM = 0;
+    public static final int OFF_HRV = 2;
+    public static final int OFF_TEMP = 4;
+    public static final int OFF_ACC_X = 6;
+    public static final int OFF_ACC_Y = 8;
+    public static final int OFF_ACC_Z = 10;
+    public static final int OFF_BVP = 12;
+    public static final int OFF_FLAGS = 14;
+
+    public static final float SCALE_BPM = 10f;
+    public static final float SCALE_HRV = 10f;
+    public static final float SCALE_TEMP = 100f;
+    public static final float SCALE_ACC = 100f;
+    public static final float SCALE_BVP = 1000f;
+
+    /** int16 sentinel for a field the band could not measure; decodes to NaN. */
+    public static final short MISSING = Short.MIN_VALUE;
+
+    public static final int FLAG_FINGER = 0x01;
+
+    // ---- Version 2 batched payload ----
+    public static final int V2_OFF_COUNT = 0;
+    public static final int V2_HEADER_SIZE = 2;
+    public static final int V2_ROW_DT = 0;
+    public static final int V2_ROW_SAMPLE = 2;
+    public static final int V2_ROW_SIZE = V2_ROW_SAMPLE + V1_PAYLOAD_SIZE;
+
+    /** Rate the band samples at in batched mode; matches the ACC rate the model was trained on. */
+    public static final int V2_SAMPLE_RATE_HZ = 32;
+
+    /** CRC-8, polynomial 0x07, init 0x00 — cheap enough for the ESP32 and matches the sketch. */
+    public static int crc8(byte[] buf, int off, int len) {
+        int crc = 0;
+        for (int i = off; i < off + len; i++) {
+            crc ^= buf[i] & 0xFF;
+            for (int b = 0; b < 8; b++) {
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+            }
+        }
+        return crc;
+    }
+
+    static int readU16(byte[] buf, int off) {
+        return (buf[off] & 0xFF) | ((buf[off + 1] & 0xFF) << 8);
+    }
+
+    static short readS16(byte[] buf, int off) {
+        return (short) readU16(buf, off);
+    }
+}
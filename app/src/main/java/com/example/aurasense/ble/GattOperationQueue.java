@@ -0,0 +1,231 @@
+package com.example.aurasense.ble;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs GATT operations for one connection strictly one at a time. Android silently drops an
+ * operation issued while another is in flight, so every MTU request, discovery and
+ * descriptor/characteristic write goes through here and the next one only starts once the
+ * matching {@code BluetoothGattCallback} reported completion via {@link #complete}.
+ *
+ * An operation the stack refuses to start, or that never completes within its timeout, is
+ * retried; after the last retry its completion sees a failure status and the queue moves on.
+ * A refused start usually means the stack is busy, so it is retried after a backoff that
+ * grows with each attempt rather than straight away.
+ */
+public class GattOperationQueue {
+
+    public enum Kind { REQUEST_MTU, DISCOVER_SERVICES, WRITE_DESCRIPTOR, WRITE_CHARACTERISTIC }
+
+    public interface Starter {
+        /** Issue the GATT call; return whether the stack accepted it. */
+        boolean start();
+    }
+
+    public interface Completion {
+        /** {@code status} is the GATT status, or {@link #STATUS_TIMEOUT} / {@link #STATUS_NOT_STARTED}. */
+        void onComplete(boolean success, int status);
+    }
+
+    public static final int STATUS_SUCCESS = 0; // BluetoothGatt.GATT_SUCCESS
+    public static final int STATUS_TIMEOUT = -1;
+    public static final int STATUS_NOT_STARTED = -2;
+
+    public static final long DEFAULT_TIMEOUT_MS = 5000L;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long RETRY_BACKOFF_MS = 75L; // times the attempts so far
+
+    private static final String TAG = "GattOperationQueue";
+
+    private static final class Operation {
+        final String name;
+        final Kind kind;
+        final Starter starter;
+        final Completion completion;
+        final long timeoutMs;
+        int attempts;
+
+        Operation(String name, Kind kind, Starter starter, Completion completion, long timeoutMs) {
+            this.name = name;
+            this.kind = kind;
+            this.starter = starter;
+            this.completion = completion;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final int maxRetries;
+
+    private final ArrayDeque<Operation> pending = new ArrayDeque<>();
+    private Operation current;
+    private ScheduledFuture<?> timeout;
+
+    private long completedCount;
+    private long retryCount;
+    private long failedCount;
+
+    public GattOperationQueue(String name, ScheduledExecutorService scheduler) {
+        this(name, scheduler, DEFAULT_MAX_RETRIES);
+    }
+
+    public GattOperationQueue(String name, ScheduledExecutorService scheduler, int maxRetries) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.maxRetries = maxRetries;
+    }
+
+    public void enqueue(String opName, Kind kind, Starter starter, Completion completion) {
+        enqueue(opName, kind, starter, completion, DEFAULT_TIMEOUT_MS);
+    }
+
+    public void enqueue(String opName, Kind kind, Starter starter, Completion completion, long timeoutMs) {
+        synchronized (this) {
+            pending.add(new Operation(opName, kind, starter, completion, timeoutMs));
+            if (current != null) return;
+        }
+        startNext();
+    }
+
+    /** Called from the BluetoothGattCallback method that matches {@code kind}. */
+    public void complete(Kind kind, int status) {
+        Operation done;
+        synchronized (this) {
+            if (current == null || current.kind != kind) {
+                Log.w(TAG, name + ": unexpected " + kind + " completion (status " + status + ")");
+                return;
+            }
+            done = current;
+            current = null;
+            cancelTimeout();
+            completedCount++;
+        }
+        finish(done, status);
+        startNext();
+    }
+
+    /** Link went down: drop everything queued without running completions. */
+    public void clear() {
+        synchronized (this) {
+            pending.clear();
+            current = null;
+            cancelTimeout();
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return current == null && pending.isEmpty();
+    }
+
+    public synchronized int getPendingCount() { return pending.size() + (current != null ? 1 : 0); }
+    public synchronized long getCompletedCount() { return completedCount; }
+    public synchronized long getRetryCount() { return retryCount; }
+    public synchronized long getFailedCount() { return failedCount; }
+
+    // Starts queued operations until one is actually in flight
+    private void startNext() {
+        while (true) {
+            Operation op;
+            synchronized (this) {
+                if (current != null || pending.isEmpty()) return;
+                op = pending.poll();
+                current = op;
+            }
+            if (attempt(op)) return;
+        }
+    }
+
+    /**
+     * @return true if {@code op} is now in flight or waiting to retry; false if it was given
+     * up and the queue can move on.
+     */
+    private boolean attempt(Operation op) {
+        boolean started;
+        try {
+            started = op.starter.start();
+        } catch (RuntimeException e) {
+            Log.w(TAG, name + ": " + op.name + " threw", e);
+            started = false;
+        }
+        synchronized (this) {
+            if (current != op) return true; // cleared, or already completed by a fast callback
+            op.attempts++;
+            if (started) {
+                timeout = scheduler.schedule(() -> onTimeout(op), op.timeoutMs, TimeUnit.MILLISECONDS);
+                return true;
+            }
+            if (op.attempts <= maxRetries) {
+                retryCount++;
+                long backoffMs = RETRY_BACKOFF_MS * op.attempts;
+                Log.w(TAG, name + ": " + op.name + " not started, retrying in " + backoffMs + "ms");
+                // Stays current meanwhile, so nothing else is started on the busy stack
+                timeout = scheduler.schedule(() -> onRetry(op), backoffMs, TimeUnit.MILLISECONDS);
+                return true;
+            }
+            current = null;
+            failedCount++;
+        }
+        Log.e(TAG, name + ": " + op.name + " could not be started");
+        finish(op, STATUS_NOT_STARTED);
+        return false;
+    }
+
+    private void onRetry(Operation op) {
+        synchronized (this) {
+            if (current != op) return;
+            timeout = null;
+        }
+        if (!attempt(op)) startNext();
+    }
+
+    private void onTimeout(Operation op) {
+        boolean retry;
+        synchronized (this) {
+            if (current != op) return;
+            timeout = null;
+            retry = op.attempts <= maxRetries;
+            if (retry) {
+                retryCount++;
+            } else {
+                current = null;
+                failedCount++;
+            }
+        }
+        if (retry) {
+            Log.w(TAG, name + ": " + op.name + " timed out after " + op.timeoutMs + "ms, retrying");
+            if (attempt(op)) return;
+        } else {
+            Log.e(TAG, name + ": " + op.name + " timed out, giving up");
+            finish(op, STATUS_TIMEOUT);
+        }
+        startNext();
+    }
+
+    private void finish(Operation op, int status) {
+        if (op.completion == null) return;
+        try {
+            op.completion.onComplete(status == STATUS_SUCCESS, status);
+        } catch (RuntimeException e) {
+            Log.e(TAG, name + ": completion of " + op.name + " failed", e);
+        }
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " pending=" + getPendingCount() + " completed=" + completedCount
+                + " retries=" + retryCount + " failed=" + failedCount;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.aurasense.ble;
+
+/**
+ * Feeds typed batches to a callback that only implements the old
+ * {@link BLEManager.BLECallback#onDataReceived(String)}: one JSON string per sample.
+ */
+public class LegacyCallbackAdapter implements SampleBatchListener {
+
+    private final BLEManager.BLECallback target;
+
+    public LegacyCallbackAdapter(BLEManager.BLECallback target) {
+        this.target = target;
+    }
+
+    public BLEManager.BLECallback getTarget() {
+        return target;
+    }
+
+    @Override
+    public void onSampleBatch(String deviceAddress, SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            target.onDataReceived(batch.toJson(i));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.aurasense.ble;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Decoded samples in struct-of-arrays form: one primitive column per field, row i across all
+ * columns is one sample. The decoder appends every sample of a notification here, so
+ * consumers get one call per packet and can walk whole columns in tight loops.
+ *
+ * Batches handed to listeners are reused for the next packet; use {@link #copy()} to keep one.
+ */
+public class SampleBatch {
+
+    public static final int DEFAULT_CAPACITY = 32;
+    public static final int FLAG_FINGER = FrameProtocol.FLAG_FINGER;
+    /** Set by the pipeline, never on the wire: frames were lost right before this row. */
+    public static final int FLAG_GAP = 0x80;
+
+    private int size;
+
+    /**
+     * Sample time in ms on the phone clock. Rows from one batched frame keep the band's own
+     * spacing, anchored so the newest row is the receive time.
+     */
+    public long[] timestampMs;
+    /** Sequence number of the frame the row came in, or -1 for JSON packets. */
+    public int[] seq;
+    public float[] bpm, hrv, temp, accX, accY, accZ, bvp;
+    public byte[] flags;
+
+    public SampleBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SampleBatch(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        timestampMs = new long[capacity];
+        seq = new int[capacity];
+        bpm = new float[capacity];
+        hrv = new float[capacity];
+        temp = new float[capacity];
+        accX = new float[capacity];
+        accY = new float[capacity];
+        accZ = new float[capacity];
+        bvp = new float[capacity];
+        flags = new byte[capacity];
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int capacity() { return seq.length; }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean isWorn(int i) {
+        return (flags[i] & FLAG_FINGER) != 0;
+    }
+
+    /** The stream is not continuous between the previous row (possibly in an earlier batch) and row i. */
+    public boolean isAfterGap(int i) {
+        return (flags[i] & FLAG_GAP) != 0;
+    }
+
+    public void markGap(int i) {
+        flags[i] |= FLAG_GAP;
+    }
+
+    /** Reserve the next row, growing the columns if needed, and fill it with "not measured". */
+    public int appendRow() {
+        if (size == seq.length) grow(size * 2);
+        int i = size++;
+        timestampMs[i] = 0L;
+        seq[i] = -1;
+        bpm[i] = hrv[i] = temp[i] = accX[i] = accY[i] = accZ[i] = bvp[i] = Float.NaN;
+        flags[i] = 0;
+        return i;
+    }
+
+    /** Drop the last row, e.g. when a frame turned out to be undecodable. */
+    public void removeLastRow() {
+        if (size > 0) size--;
+    }
+
+    /** Drop every row from {@code newSize} on, e.g. a frame that turned out to be a duplicate. */
+    public void truncate(int newSize) {
+        if (newSize >= 0 && newSize < size) size = newSize;
+    }
+
+    private void grow(int capacity) {
+        timestampMs = Arrays.copyOf(timestampMs, capacity);
+        seq = Arrays.copyOf(seq, capacity);
+        bpm = Arrays.copyOf(bpm, capacity);
+        hrv = Arrays.copyOf(hrv, capacity);
+        temp = Arrays.copyOf(temp, capacity);
+        accX = Arrays.copyOf(accX, capacity);
+        accY = Arrays.copyOf(accY, capacity);
+        accZ = Arrays.copyOf(accZ, capacity);
+        bvp = Arrays.copyOf(bvp, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    /** Detached, right-sized copy for handing the batch to another pipeline stage. */
+    public SampleBatch copy() {
+        SampleBatch c = new SampleBatch(size);
+        System.arraycopy(timestampMs, 0, c.timestampMs, 0, size);
+        System.arraycopy(seq, 0, c.seq, 0, size);
+        System.arraycopy(bpm, 0, c.bpm, 0, size);
+        System.arraycopy(hrv, 0, c.hrv, 0, size);
+        System.arraycopy(temp, 0, c.temp, 0, size);
+        System.arraycopy(accX, 0, c.accX, 0, size);
+        System.arraycopy(accY, 0, c.accY, 0, size);
+        System.arraycopy(accZ, 0, c.accZ, 0, size);
+        System.arraycopy(bvp, 0, c.bvp, 0, size);
+        System.arraycopy(flags, 0, c.flags, 0, size);
+        c.size = size;
+        return c;
+    }
+
+    /** Legacy representation of one row, same keys the firmware used to send. */
+    public String toJson(int i) {
+        return String.format(Locale.US,
+                "{\"acc_x\":%s,\"acc_y\":%s,\"acc_z\":%s,\"temp\":%s,\"bvp\":%s,\"bpm\":%s,\"hrv\":%s,\"finger\":%d}",
+                num(accX[i]), num(accY[i]), num(accZ[i]), num(temp[i]), num(bvp[i]), num(bpm[i]), num(hrv[i]),
+                isWorn(i) ? 1 : 0);
+    }
+
+    private static String num(float v) {
+        return Float.isNaN(v) || Float.isInfinite(v) ? "null" : String.valueOf(v);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.aurasense.ble;
+
+/**
+ * Typed sample delivery: one call per BLE notification with every sample it carried,
+ * already decoded. Implement this next to {@link BLEManager.BLECallback} to skip the
+ * legacy JSON string path entirely.
+ */
+public interface SampleBatchListener {
+    /**
+     * Called on the band's parse worker, not on the GATT callback thread. The batch is reused
+     * for the next notification; call {@link SampleBatch#copy()} to keep it.
+     */
+    void onSampleBatch(String deviceAddress, SampleBatch batch);
+}
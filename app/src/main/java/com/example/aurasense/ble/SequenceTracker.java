@@ -0,0 +1,101 @@
+package com.example.aurasense.ble;
+
+import java.util.Locale;
+
+/**
+ * Follows the band's 16-bit frame sequence numbers on one band's parse worker and accounts
+ * for lost and duplicated frames. Counts are kept for the current connection (cleared by
+ * {@link #reset()} when a new link comes up) and in total for the lifetime of the band.
+ */
+public class SequenceTracker {
+
+    public static final int SEQ_MODULUS = 0x10000;
+    // A forward jump bigger than this is the band restarting its counter, not loss
+    public static final int MAX_GAP_FRAMES = 1024;
+
+    /** {@link #observe} results besides a non-negative count of missed frames. */
+    public static final int DUPLICATE = -1;
+    /** First frame of a connection, or the counter restarted: continuity unknown. */
+    public static final int DISCONTINUITY = -2;
+
+    private int last = -1;
+
+    // Written by the parse worker only
+    private volatile long received;
+    private volatile long lost;
+    private volatile long duplicates;
+    private volatile long discontinuities;
+    private volatile long totalReceived;
+    private volatile long totalLost;
+    private volatile long totalDuplicates;
+
+    /**
+     * @return number of frames missed right before {@code seq} (0 when in order),
+     * {@link #DUPLICATE} if it was already seen, or {@link #DISCONTINUITY}.
+     */
+    public int observe(int seq) {
+        seq &= SEQ_MODULUS - 1;
+        if (last < 0) {
+            last = seq;
+            received++;
+            totalReceived++;
+            discontinuities++;
+            return DISCONTINUITY;
+        }
+        int delta = (seq - last) & (SEQ_MODULUS - 1);
+        if (delta == 0 || delta >= SEQ_MODULUS / 2) {
+            // Repeated or older than the newest frame: notifications are in order on one link
+            duplicates++;
+            totalDuplicates++;
+            return DUPLICATE;
+        }
+        last = seq;
+        received++;
+        totalReceived++;
+        if (delta > MAX_GAP_FRAMES) {
+            discontinuities++;
+            return DISCONTINUITY;
+        }
+        int missed = delta - 1;
+        lost += missed;
+        totalLost += missed;
+        return missed;
+    }
+
+    /** New connection: the next frame starts a fresh sequence. */
+    public void reset() {
+        last = -1;
+        received = 0;
+        lost = 0;
+        duplicates = 0;
+        discontinuities = 0;
+    }
+
+    public long getReceivedCount() { return received; }
+    public long getLostCount() { return lost; }
+    public long getDuplicateCount() { return duplicates; }
+    public long getDiscontinuityCount() { return discontinuities; }
+    public long getTotalReceivedCount() { return totalReceived; }
+    public long getTotalLostCount() { return totalLost; }
+    public long getTotalDuplicateCount() { return totalDuplicates; }
+
+    /** Lost over expected frames on the current connection, 0..1. */
+    public float getLossRate() {
+        return lossRate(received, lost);
+    }
+
+    public float getTotalLossRate() {
+        return lossRate(totalReceived, totalLost);
+    }
+
+    private static float lossRate(long received, long lost) {
+        long expected = received + lost;
+        return expected == 0 ? 0f : (float) lost / expected;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "seq rx=%d lost=%d (%.2f%%) dup=%d restarts=%d total_loss=%.2f%%",
+                received, lost, getLossRate() * 100f, duplicates, discontinuities, getTotalLossRate() * 100f);
+    }
+}
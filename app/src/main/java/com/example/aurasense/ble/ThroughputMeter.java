@@ -0,0 +1,83 @@
+package com.example.aurasense.ble;
+
+import java.util.Locale;
+
+/**
+ * Radio throughput of one band, measured on the GATT callback thread as notifications arrive.
+ * Rates are published once per one-second window so reading them never touches the hot path;
+ * utilization is the share of the negotiated notification payload (MTU - 3) actually used.
+ */
+public class ThroughputMeter {
+
+    /** ATT notification header; a notification carries at most MTU - 3 bytes of value. */
+    public static final int ATT_HEADER_SIZE = 3;
+    public static final int DEFAULT_MTU = 23;
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private volatile int mtu = DEFAULT_MTU;
+
+    // Written by the single GATT callback thread only
+    private long windowStartNanos;
+    private long windowBytes;
+    private long windowNotifications;
+    private volatile long totalBytes;
+    private volatile long totalNotifications;
+
+    // Last complete window
+    private volatile float bytesPerSecond;
+    private volatile float notificationsPerSecond;
+    private volatile float utilization;
+
+    public void setMtu(int mtu) {
+        this.mtu = mtu;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    public int getMaxPayload() {
+        return mtu - ATT_HEADER_SIZE;
+    }
+
+    public void record(int bytes) {
+        record(bytes, System.nanoTime());
+    }
+
+    void record(int bytes, long nowNanos) {
+        if (totalNotifications == 0) windowStartNanos = nowNanos;
+        long elapsed = nowNanos - windowStartNanos;
+        if (elapsed >= WINDOW_NANOS) {
+            publish(elapsed);
+            windowStartNanos = nowNanos;
+            windowBytes = 0;
+            windowNotifications = 0;
+        }
+        windowBytes += bytes;
+        windowNotifications++;
+        totalBytes += bytes;
+        totalNotifications++;
+    }
+
+    private void publish(long elapsedNanos) {
+        float seconds = elapsedNanos / 1e9f;
+        bytesPerSecond = windowBytes / seconds;
+        notificationsPerSecond = windowNotifications / seconds;
+        utilization = windowNotifications == 0 ? 0f
+                : (float) windowBytes / (windowNotifications * (float) getMaxPayload());
+    }
+
+    public float getBytesPerSecond() { return bytesPerSecond; }
+    public float getNotificationsPerSecond() { return notificationsPerSecond; }
+    /** Mean notification size over the negotiated maximum, 0..1. */
+    public float getPayloadUtilization() { return utilization; }
+    public long getTotalBytes() { return totalBytes; }
+    public long getTotalNotifications() { return totalNotifications; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "mtu=%d %.0fB/s %.1fntf/s util=%.0f%%",
+                mtu, bytesPerSecond, notificationsPerSecond, utilization * 100f);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.aurasense.pipeline;
+
+/** What a stage boundary does when its consumer falls behind. */
+public enum BackpressurePolicy {
+    /** Keep the newest items; the oldest queued item is discarded to make room. */
+    DROP_OLDEST,
+    /** Only the latest item matters; a new item replaces the one still waiting. */
+    COALESCE,
+    /** The producer waits for room. Never use on the BLE callback thread. */
+    BLOCK
+}
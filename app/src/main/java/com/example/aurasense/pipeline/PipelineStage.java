@@ -0,0 +1,124 @@
+package com.example.aurasense.pipeline;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One stage of the ingest pipeline: a {@link StageQueue} in front of a consumer that runs on
+ * its own executor. Producers never run the consumer themselves, so a slow stage only fills
+ * (and then sheds, coalesces or blocks on) its own queue.
+ *
+ * The consumer is scheduled at most once at a time and drains everything queued, so a burst
+ * of offers costs one executor hop. Use {@link #onNewThread} for workers and
+ * {@link #onExecutor} with a main-thread Handler for UI stages.
+ */
+public class PipelineStage<T> {
+
+    public interface Consumer<T> {
+        void accept(T item);
+    }
+
+    private static final String TAG = "PipelineStage";
+    // A consumer that throws on every item would otherwise log at the packet rate
+    private static final long FAILURE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final StageQueue<T> queue;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Consumer<T> consumer;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+    private volatile boolean shutdown;
+    private volatile long processed;
+    private volatile long failures;
+    // Consumer thread only
+    private long lastFailureLogNanos;
+    private long failuresAtLastLog;
+
+    public static <T> PipelineStage<T> onNewThread(String name, int capacity, BackpressurePolicy policy,
+                                                   Consumer<T> consumer) {
+        ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+        return new PipelineStage<>(name, new StageQueue<>(capacity, policy), worker, worker, consumer);
+    }
+
+    public static <T> PipelineStage<T> onExecutor(String name, int capacity, BackpressurePolicy policy,
+                                                  Executor executor, Consumer<T> consumer) {
+        return new PipelineStage<>(name, new StageQueue<>(capacity, policy), executor, null, consumer);
+    }
+
+    private PipelineStage(String name, StageQueue<T> queue, Executor executor, ExecutorService ownedExecutor,
+                          Consumer<T> consumer) {
+        this.name = name;
+        this.queue = queue;
+        this.executor = executor;
+        this.ownedExecutor = ownedExecutor;
+        this.consumer = consumer;
+    }
+
+    /** @return false if the item displaced another one or the stage is shut down. */
+    public boolean offer(T item) {
+        if (shutdown) return false;
+        boolean accepted = queue.offer(item);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(drainTask);
+        }
+        return accepted;
+    }
+
+    private void drain() {
+        while (true) {
+            T item;
+            while (!shutdown && (item = queue.poll()) != null) {
+                try {
+                    consumer.accept(item);
+                } catch (RuntimeException e) {
+                    failures++;
+                    logFailure(e);
+                }
+                processed++;
+            }
+            scheduled.set(false);
+            // An offer may have landed after the last poll but before the flag was cleared.
+            if (shutdown || queue.isEmpty() || !scheduled.compareAndSet(false, true)) return;
+        }
+    }
+
+    // First failure, then at most one per interval with the count of those not logged
+    private void logFailure(RuntimeException e) {
+        long now = System.nanoTime();
+        if (failuresAtLastLog != 0 && now - lastFailureLogNanos < FAILURE_LOG_INTERVAL_NANOS) return;
+        long unlogged = failures - failuresAtLastLog - 1;
+        lastFailureLogNanos = now;
+        failuresAtLastLog = failures;
+        Log.e(TAG, name + ": consumer failed" + (unlogged > 0 ? " (" + unlogged + " more since last logged)" : ""), e);
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        if (ownedExecutor != null) ownedExecutor.shutdown();
+    }
+
+    public String getName() { return name; }
+    public StageQueue<T> getQueue() { return queue; }
+    public long getProcessedCount() { return processed; }
+    public long getFailureCount() { return failures; }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s[%s depth=%d/%d max=%d in=%d out=%d dropped=%d coalesced=%d blockedMs=%d failed=%d]",
+                name, queue.getPolicy(), queue.depth(), queue.getCapacity(), queue.getMaxDepth(),
+                queue.getOfferedCount(), processed, queue.getDroppedCount(), queue.getCoalescedCount(),
+                queue.getBlockedNanos() / 1_000_000L, failures);
+    }
+}
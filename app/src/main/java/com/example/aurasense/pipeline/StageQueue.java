@@ -0,0 +1,108 @@
+package com.example.aurasense.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue between one producer thread and one consumer thread.
+ *
+ * DROP_OLDEST lets the producer advance the read index itself, so the head is claimed with a
+ * CAS on both sides; the consumer reads a slot before claiming it and retries if the producer
+ * took it first. COALESCE keeps a single latest-item slot. BLOCK parks the producer in short
+ * slices until the consumer frees a slot.
+ */
+public class StageQueue<T> {
+
+    private static final long BLOCK_PARK_NANOS = 50_000L;
+
+    private final BackpressurePolicy policy;
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong head = new AtomicLong(); // next index to read
+    private final AtomicLong tail = new AtomicLong(); // next index to write (producer only)
+    private final AtomicReference<T> latest = new AtomicReference<>();
+
+    // ---- Metrics ----
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private volatile int maxDepth;
+
+    /** @param capacity rounded up to a power of two; ignored for COALESCE (always one slot). */
+    public StageQueue(int capacity, BackpressurePolicy policy) {
+        this.policy = policy;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(policy == BackpressurePolicy.COALESCE ? 1 : this.capacity);
+    }
+
+    /** @return false if accepting the item cost another item (dropped or coalesced away). */
+    public boolean offer(T item) {
+        offered.incrementAndGet();
+
+        if (policy == BackpressurePolicy.COALESCE) {
+            boolean replaced = latest.getAndSet(item) != null;
+            if (replaced) coalesced.incrementAndGet();
+            if (maxDepth < 1) maxDepth = 1;
+            return !replaced;
+        }
+
+        boolean lost = false;
+        long t = tail.get();
+        long h;
+        while (t - (h = head.get()) >= capacity) {
+            if (policy == BackpressurePolicy.BLOCK) {
+                long start = System.nanoTime();
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                blockedNanos.addAndGet(System.nanoTime() - start);
+            } else if (head.compareAndSet(h, h + 1)) {
+                dropped.incrementAndGet();
+                lost = true;
+            }
+        }
+        slots.set((int) t & mask, item);
+        tail.set(t + 1);
+
+        int depth = (int) (t + 1 - head.get());
+        if (depth > maxDepth) maxDepth = depth;
+        return !lost;
+    }
+
+    /** @return the next item, or null if the queue is empty. Consumer thread only. */
+    public T poll() {
+        if (policy == BackpressurePolicy.COALESCE) return latest.getAndSet(null);
+
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get()) return null;
+            int idx = (int) h & mask;
+            T item = slots.get(idx);
+            if (head.compareAndSet(h, h + 1)) {
+                // The producer may already have reused the slot after a drop; only clear our own item.
+                slots.compareAndSet(idx, item, null);
+                return item;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return depth() == 0;
+    }
+
+    public int depth() {
+        if (policy == BackpressurePolicy.COALESCE) return latest.get() != null ? 1 : 0;
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public BackpressurePolicy getPolicy() { return policy; }
+    public int getCapacity() { return policy == BackpressurePolicy.COALESCE ? 1 : capacity; }
+    public int getMaxDepth() { return maxDepth; }
+    public long getOfferedCount() { return offered.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getCoalescedCount() { return coalesced.get(); }
+    public long getBlockedNanos() { return blockedNanos.get(); }
+}
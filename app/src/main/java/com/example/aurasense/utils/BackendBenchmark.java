@@ -0,0 +1,205 @@
+package com.example.aurasense.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static com.example.aurasense.utils.TFLiteEmotionInterpreter.NUM_FEATURES;
+
+/**
+ * Compares the inference backends on this device and picks one. Each backend is measured for
+ * load time (session build plus warm-up), single-row latency (the live path), batch
+ * throughput (the history path) and the memory its load added. The winner, by live latency,
+ * is remembered per device class and model version, so the comparison runs once.
+ */
+public final class BackendBenchmark {
+
+    /** One backend's measurements on this device. */
+    public static final class Report {
+        public final InferenceBackend.Kind kind;
+        public final long loadMs;
+        /** Median single-row call. */
+        public final double latencyMs;
+        public final double batchRowsPerSecond;
+        /** Native and Java heap growth from loading; approximate, other threads allocate too. */
+        public final long nativeBytes;
+        public final long javaBytes;
+
+        Report(InferenceBackend.Kind kind, long loadMs, double latencyMs, double batchRowsPerSecond,
+               long nativeBytes, long javaBytes) {
+            this.kind = kind;
+            this.loadMs = loadMs;
+            this.latencyMs = latencyMs;
+            this.batchRowsPerSecond = batchRowsPerSecond;
+            this.nativeBytes = nativeBytes;
+            this.javaBytes = javaBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s load=%dms call=%.3fms batch=%.0f rows/s native=+%dKB java=+%dKB",
+                    kind, loadMs, latencyMs, batchRowsPerSecond, nativeBytes / 1024, javaBytes / 1024);
+        }
+    }
+
+    private static final String TAG = "BackendBenchmark";
+    private static final String PREFS = "AuraModel";
+    private static final String KEY_BACKEND = "backend";
+    private static final String KEY_BACKEND_STAMP = "backend_device_class";
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 50;
+    private static final int BATCH_ROWS = 256;
+    private static final int BATCH_RUNS = 5;
+
+    private BackendBenchmark() { }
+
+    /** Backends this build can run: ONNX always, the others when their model is bundled. */
+    public static List<InferenceBackend.Kind> available(Context context) {
+        List<InferenceBackend.Kind> kinds = new ArrayList<>();
+        for (InferenceBackend.Kind kind : InferenceBackend.Kind.values()) {
+            if (kind == InferenceBackend.Kind.ONNX || ModelAsset.exists(context, assetFor(kind))) kinds.add(kind);
+        }
+        return kinds;
+    }
+
+    static String assetFor(InferenceBackend.Kind kind) {
+        switch (kind) {
+            case TFLITE:
+                return TfliteBackend.MODEL_ASSET;
+            case JAVA:
+                return TreeEnsembleBackend.MODEL_ASSET;
+            default:
+                return OnnxBackend.MODEL_ASSET;
+        }
+    }
+
+    static InferenceBackend open(Context context, InferenceBackend.Kind kind) throws Exception {
+        switch (kind) {
+            case TFLITE:
+                return new TfliteBackend(context);
+            case JAVA:
+                return new TreeEnsembleBackend(context);
+            default:
+                return new OnnxBackend(context);
+        }
+    }
+
+    /**
+     * Opens the backend chosen for this device class, comparing the available backends
+     * first if none has been chosen yet for it (or for the bundled models).
+     */
+    static InferenceBackend openPreferred(Context context) throws Exception {
+        List<InferenceBackend.Kind> kinds = available(context);
+        if (kinds.size() == 1) return open(context, kinds.get(0));
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String stamp = deviceClass(context) + "|" + modelStamp(context, kinds);
+        InferenceBackend.Kind chosen = null;
+        if (stamp.equals(prefs.getString(KEY_BACKEND_STAMP, null))) {
+            try {
+                chosen = InferenceBackend.Kind.valueOf(prefs.getString(KEY_BACKEND, ""));
+            } catch (IllegalArgumentException ignored) {
+                // not chosen yet
+            }
+        }
+        if (chosen == null) {
+            Report best = null;
+            for (Report r : compare(context)) {
+                if (best == null || r.latencyMs < best.latencyMs) best = r;
+            }
+            chosen = best != null ? best.kind : InferenceBackend.Kind.ONNX;
+            prefs.edit().putString(KEY_BACKEND, chosen.name()).putString(KEY_BACKEND_STAMP, stamp).apply();
+            Log.d(TAG, "Selected " + chosen + " for " + stamp);
+        }
+        try {
+            return open(context, chosen);
+        } catch (Exception e) {
+            if (chosen == InferenceBackend.Kind.ONNX) throw e;
+            Log.w(TAG, chosen + " failed to load, falling back to ONNX", e);
+            return open(context, InferenceBackend.Kind.ONNX);
+        }
+    }
+
+    /** Measures every available backend in turn; backends that fail to load are left out. */
+    public static List<Report> compare(Context context) {
+        List<Report> reports = new ArrayList<>();
+        for (InferenceBackend.Kind kind : available(context)) {
+            try {
+                Report r = measure(context, kind);
+                Log.d(TAG, r.toString());
+                reports.add(r);
+            } catch (Exception e) {
+                Log.w(TAG, kind + " not usable: " + e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    public static Report measure(Context context, InferenceBackend.Kind kind) throws Exception {
+        Runtime rt = Runtime.getRuntime();
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long javaBefore = rt.totalMemory() - rt.freeMemory();
+        long start = SystemClock.elapsedRealtime();
+        InferenceBackend backend = open(context, kind);
+        try {
+            backend.warmUp();
+            long loadMs = SystemClock.elapsedRealtime() - start;
+            long nativeBytes = Math.max(0L, Debug.getNativeHeapAllocatedSize() - nativeBefore);
+            long javaBytes = Math.max(0L, rt.totalMemory() - rt.freeMemory() - javaBefore);
+
+            float[] row = new float[NUM_FEATURES];
+            long[] times = new long[TIMED_RUNS];
+            InferenceBackend.Runner runner = backend.newRunner();
+            try {
+                for (int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+                    long t0 = System.nanoTime();
+                    runner.run(row);
+                    if (i >= WARMUP_RUNS) times[i - WARMUP_RUNS] = System.nanoTime() - t0;
+                }
+            } finally {
+                runner.close();
+            }
+            Arrays.sort(times);
+
+            float[] batch = new float[BATCH_ROWS * NUM_FEATURES];
+            backend.predictBatch(batch, BATCH_ROWS);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < BATCH_RUNS; i++) backend.predictBatch(batch, BATCH_ROWS);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+
+            return new Report(kind, loadMs, times[TIMED_RUNS / 2] / 1e6,
+                    BATCH_ROWS * BATCH_RUNS / seconds, nativeBytes, javaBytes);
+        } finally {
+            backend.close();
+        }
+    }
+
+    /** Devices in one class are expected to rank the backends the same way. */
+    static String deviceClass(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = am != null ? am.getMemoryClass() : 0;
+        boolean lowRam = am != null && am.isLowRamDevice();
+        return String.format(Locale.US, "%s/%dcpu/%dMB%s/sdk%d", Build.SUPPORTED_ABIS[0],
+                Runtime.getRuntime().availableProcessors(), memoryClass, lowRam ? "/lowram" : "",
+                Build.VERSION.SDK_INT);
+    }
+
+    private static String modelStamp(Context context, List<InferenceBackend.Kind> kinds) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (InferenceBackend.Kind kind : kinds) {
+            if (sb.length() > 0) sb.append('+');
+            sb.append(kind).append(':').append(ModelAsset.open(context, assetFor(kind)).hash);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.aurasense.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static com.example.aurasense.utils.HistoryCursor.COLUMNS;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_MAG;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_X;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_Y;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_Z;
+import static com.example.aurasense.utils.HistoryCursor.COL_BPM;
+import static com.example.aurasense.utils.HistoryCursor.COL_BVP;
+import static com.example.aurasense.utils.HistoryCursor.COL_HRV;
+import static com.example.aurasense.utils.HistoryCursor.COL_LABEL;
+import static com.example.aurasense.utils.HistoryCursor.COL_TEMP;
+import static com.example.aurasense.utils.HistoryCursor.COL_TIMESTAMP;
+
+/**
+ * One band's history on disk: append-only segment files of fixed-width columns, written and
+ * read through memory mappings.
+ *
+ * A segment holds up to {@link #SEGMENT_ROWS} rows. After a 64-byte header come the columns,
+ * each a contiguous primitive array sized for the full segment: timestamp (int64), bpm, temp,
+ * hrv, accX, accY, accZ, accMag, bvp (float32) and the model label (int8), in
+ * {@link HistoryCursor} column order. A row is written
+ * column by column into the mapping and then committed by bumping the header's row count, so
+ * a process killed mid-append leaves at most an uncommitted row behind. Mapped pages belong to
+ * the kernel, so appended rows survive the process being killed; a full segment is forced to
+ * storage before the next one starts.
+ *
+ * Reads go straight to the mapped pages through {@link Cursor}s and nothing is copied onto
+ * the Java heap, so weeks of history cost address space rather than heap. Time ranges are
+ * found by binary search, first over the segments and then through a sparse per-segment
+ * index of every {@link #INDEX_STRIDE}th timestamp, so a query reads only the pages of the
+ * rows it returns and of the columns it asks for. Rows are in append order, which is taken to
+ * be time order; history written across a backwards clock change may be partly missed by a
+ * time range. Gaps are kept next to the segments.
+ *
+ * One writer per store, any number of readers, and readers never lock. The segment list is
+ * replaced rather than modified and each segment's row count is volatile and bumped after
+ * the row is written, so a cursor fixes its rows when it is opened and sees every row
+ * committed by then. Rows are never rewritten; {@link #clear()} only unlinks the files, and
+ * their mappings stay readable to cursors that still hold them.
+ */
+public final class ColumnarHistoryStore {
+
+    // Bytes per value of each HistoryCursor column
+    private static final int[] WIDTH = {8, 4, 4, 4, 4, 4, 4, 4, 4, 1};
+
+    /** ~9 hours per segment at the 2s history cadence, ~720 KB on disk. */
+    static final int SEGMENT_ROWS = 16384;
+
+    private static final int MAGIC = 0x47534841; // "AHSG", little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int OFF_CAPACITY = 8;
+    private static final int OFF_COUNT = 12;
+
+    // One index entry per this many rows: 256 entries, 2 KB, per full segment
+    static final int INDEX_STRIDE = 64;
+
+    private static final int PREALLOCATE_CHUNK = 64 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String GAPS_FILE = "gaps.bin";
+
+    /** One segment file and its mapping. */
+    static final class Segment {
+        final File file;
+        final long firstRow;
+        final int capacity;
+        final MappedByteBuffer map;
+        final int[] columnOffset = new int[COLUMNS];
+        // Rows committed; the header holds the same count for the next open
+        volatile int count;
+        // Sparse timestamp index: row k * INDEX_STRIDE's timestamp, filled lazily by searches
+        final long[] index;
+        private int indexedRows; // guarded by index
+
+        Segment(File file, long firstRow, int capacity, MappedByteBuffer map, int count) {
+            this.file = file;
+            this.firstRow = firstRow;
+            this.capacity = capacity;
+            this.map = map;
+            this.count = count;
+            this.index = new long[(capacity + INDEX_STRIDE - 1) / INDEX_STRIDE];
+            int off = HEADER_BYTES;
+            for (int c = 0; c < COLUMNS; c++) {
+                columnOffset[c] = off;
+                off += capacity * WIDTH[c];
+            }
+        }
+
+        long timestamp(int i) { return map.getLong(columnOffset[COL_TIMESTAMP] + i * 8); }
+        float value(int column, int i) { return map.getFloat(columnOffset[column] + i * 4); }
+        int label(int i) { return map.get(columnOffset[COL_LABEL] + i); }
+
+        /** First of the first {@code rows} rows timestamped at or after {@code t}, or {@code rows}. */
+        int lowerBound(long t, int rows) {
+            if (rows == 0) return 0;
+            int entries = (rows + INDEX_STRIDE - 1) / INDEX_STRIDE;
+            synchronized (index) {
+                // Rows are never rewritten, so indexed entries stay valid
+                for (int k = (indexedRows + INDEX_STRIDE - 1) / INDEX_STRIDE; k < entries; k++) {
+                    index[k] = timestamp(k * INDEX_STRIDE);
+                }
+                indexedRows = Math.max(indexedRows, rows);
+            }
+            // The index narrows it to one stride of rows, only those are read from the mapping
+            int lo = 0, hi = entries;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index[mid] < t) lo = mid + 1; else hi = mid;
+            }
+            int from = Math.max(0, (lo - 1) * INDEX_STRIDE);
+            int to = Math.min(rows, lo * INDEX_STRIDE);
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (timestamp(mid) < t) from = mid + 1; else to = mid;
+            }
+            return from;
+        }
+    }
+
+    private final File dir;
+    // Copy-on-write; the last one takes appends
+    private volatile Segment[] segments;
+    // Newest first; replaced, never modified, so readers take it without locking
+    private volatile List<HistoryStorage.Gap> gaps = Collections.emptyList();
+
+    private ColumnarHistoryStore(File dir, Segment[] segments) {
+        this.dir = dir;
+        this.segments = segments;
+    }
+
+    /** Opens the store in {@code dir}, creating it if needed. */
+    public static ColumnarHistoryStore open(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) throw new IOException("Cannot list " + dir);
+        Arrays.sort(files); // names are zero-padded sequence numbers
+
+        List<Segment> opened = new ArrayList<>();
+        long rows = 0;
+        for (int i = 0; i < files.length; i++) {
+            Segment s = mapSegment(files[i], rows, i == files.length - 1);
+            if (s.count == 0) continue;
+            opened.add(s);
+            rows += s.count;
+        }
+        ColumnarHistoryStore store = new ColumnarHistoryStore(dir, opened.toArray(new Segment[0]));
+        store.readGaps();
+        return store;
+    }
+
+    private static Segment mapSegment(File file, long firstRow, boolean writable) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_BYTES) throw new IOException("Truncated segment " + file);
+            MappedByteBuffer map = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt(0) != MAGIC) throw new IOException("Not a history segment: " + file);
+            int version = map.getShort(4) & 0xFFFF;
+            if (version != VERSION) throw new IOException("Unsupported segment version " + version + ": " + file);
+            int capacity = map.getInt(OFF_CAPACITY);
+            if (channel.size() < segmentBytes(capacity)) throw new IOException("Truncated segment " + file);
+            int count = Math.max(0, Math.min(capacity, map.getInt(OFF_COUNT)));
+            // The mapping outlives the channel
+            return new Segment(file, firstRow, capacity, map, count);
+        }
+    }
+
+    private static long segmentBytes(int capacity) {
+        long bytes = HEADER_BYTES;
+        for (int w : WIDTH) bytes += (long) capacity * w;
+        return bytes;
+    }
+
+    private Segment newSegment(long firstRow, int sequence) throws IOException {
+        File file = new File(dir, String.format(Locale.US, "%08d%s", sequence, SEGMENT_SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // Write every byte rather than setLength(): a sparse file would only run out of
+            // disk when a mapped store faults, which is a SIGBUS, not an IOException
+            byte[] zeros = new byte[PREALLOCATE_CHUNK];
+            for (long left = segmentBytes(SEGMENT_ROWS); left > 0; left -= zeros.length) {
+                raf.write(zeros, 0, (int) Math.min(zeros.length, left));
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort((short) VERSION).putShort((short) COLUMNS)
+                    .putInt(SEGMENT_ROWS).putInt(0);
+            raf.seek(0);
+            raf.write(header.array());
+            raf.getFD().sync();
+        } catch (IOException e) {
+            file.delete(); // a zeroed file would not open as a segment
+            throw e;
+        }
+        return mapSegment(file, firstRow, true);
+    }
+
+    // -------- Writing (one writer) --------
+
+    /** Appends one row; visible to readers once this returns. */
+    public synchronized void append(HistoryStorage.Entry e) throws IOException {
+        Segment[] current = segments;
+        Segment last = current.length > 0 ? current[current.length - 1] : null;
+        if (last == null || last.count == last.capacity || last.map.isReadOnly()) {
+            if (last != null && !last.map.isReadOnly()) last.map.force();
+            long firstRow = last != null ? last.firstRow + last.count : 0;
+            last = newSegment(firstRow, nextSequence(current));
+            Segment[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = last;
+            segments = grown;
+        }
+
+        int i = last.count;
+        MappedByteBuffer m = last.map;
+        int[] off = last.columnOffset;
+        m.putLong(off[COL_TIMESTAMP] + i * 8, e.timestamp);
+        m.putFloat(off[COL_BPM] + i * 4, e.bpm);
+        m.putFloat(off[COL_TEMP] + i * 4, e.temp);
+        m.putFloat(off[COL_HRV] + i * 4, e.hrv);
+        m.putFloat(off[COL_ACC_X] + i * 4, e.accX);
+        m.putFloat(off[COL_ACC_Y] + i * 4, e.accY);
+        m.putFloat(off[COL_ACC_Z] + i * 4, e.accZ);
+        m.putFloat(off[COL_ACC_MAG] + i * 4, e.accMag);
+        m.putFloat(off[COL_BVP] + i * 4, e.bvp);
+        m.put(off[COL_LABEL] + i, (byte) e.label);
+        // Commit: the header for the next open, the field for readers in this process
+        m.putInt(OFF_COUNT, i + 1);
+        last.count = i + 1;
+    }
+
+    private static int nextSequence(Segment[] current) {
+        if (current.length == 0) return 0;
+        String name = current[current.length - 1].file.getName();
+        return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1;
+    }
+
+    public synchronized void appendGap(HistoryStorage.Gap gap) throws IOException {
+        ByteBuffer row = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        row.putLong(gap.fromTimestamp).putLong(gap.toTimestamp);
+        try (FileOutputStream out = new FileOutputStream(new File(dir, GAPS_FILE), true)) {
+            out.write(row.array());
+        }
+        List<HistoryStorage.Gap> grown = new ArrayList<>(gaps.size() + 1);
+        grown.add(gap);
+        grown.addAll(gaps);
+        gaps = Collections.unmodifiableList(grown);
+    }
+
+    /** Deletes every row and gap. Readers holding older rows may still read them. */
+    public synchronized void clear() {
+        Segment[] current = segments;
+        segments = new Segment[0];
+        for (Segment s : current) {
+            //noinspection ResultOfMethodCallIgnored
+            s.file.delete();
+        }
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir, GAPS_FILE).delete();
+        gaps = Collections.emptyList();
+    }
+
+    private void readGaps() throws IOException {
+        File file = new File(dir, GAPS_FILE);
+        if (!file.exists()) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            int n = (int) (raf.length() / 16); // a torn last record is ignored
+            byte[] bytes = new byte[n * 16];
+            raf.readFully(bytes);
+            ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            List<HistoryStorage.Gap> read = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) read.add(new HistoryStorage.Gap(in.getLong(), in.getLong()));
+            Collections.reverse(read); // newest first
+            gaps = Collections.unmodifiableList(read);
+        }
+    }
+
+    // -------- Reading (any thread) --------
+
+    /** Rows committed so far. */
+    public long size() {
+        Segment[] current = segments;
+        if (current.length == 0) return 0;
+        Segment last = current[current.length - 1];
+        return last.firstRow + last.count;
+    }
+
+    static Segment segmentOf(Segment[] snapshot, long row) {
+        int lo = 0, hi = snapshot.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (snapshot[mid].firstRow <= row) lo = mid; else hi = mid - 1;
+        }
+        return snapshot[lo];
+    }
+
+    private static long rows(Segment[] snapshot) {
+        if (snapshot.length == 0) return 0;
+        Segment last = snapshot[snapshot.length - 1];
+        return last.firstRow + last.count;
+    }
+
+    /** First of the snapshot's first {@code rows} rows at or after {@code t}, or {@code rows}. */
+    private static long lowerBound(Segment[] snapshot, long rows, long t) {
+        // The first segment whose last row is at or after t holds the answer
+        int lo = 0, hi = snapshot.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Segment s = snapshot[mid];
+            int n = (int) Math.min(s.count, rows - s.firstRow);
+            if (n <= 0 || s.timestamp(n - 1) >= t) hi = mid; else lo = mid + 1;
+        }
+        if (lo == snapshot.length) return rows;
+        Segment s = snapshot[lo];
+        int n = (int) Math.max(0, Math.min(s.count, rows - s.firstRow));
+        return s.firstRow + s.lowerBound(t, n);
+    }
+
+    /** A cursor over the rows committed now, newest first; rewinding keeps the same rows. */
+    public Cursor newestFirst() {
+        Segment[] snapshot = segments;
+        long rows = rows(snapshot);
+        return new Cursor(snapshot, 0, rows, true);
+    }
+
+    /** As {@link #newestFirst()}, oldest first. */
+    public Cursor oldestFirst() {
+        Segment[] snapshot = segments;
+        long rows = rows(snapshot);
+        return new Cursor(snapshot, 0, rows, false);
+    }
+
+    /** Rows with {@code fromMs <= timestamp < toMs}, oldest first. */
+    public Cursor range(long fromMs, long toMs) {
+        Segment[] snapshot = segments;
+        long rows = rows(snapshot);
+        long from = lowerBound(snapshot, rows, fromMs);
+        long to = toMs <= fromMs ? from : lowerBound(snapshot, rows, toMs);
+        return new Cursor(snapshot, from, to, false);
+    }
+
+    /** The newest {@code n} rows, newest first. */
+    public Cursor latest(int n) {
+        Segment[] snapshot = segments;
+        long rows = rows(snapshot);
+        return new Cursor(snapshot, Math.max(0, rows - Math.max(0, n)), rows, true);
+    }
+
+    /**
+     * Newest-first list over the rows committed now; each get decodes an Entry from the
+     * mapping. One reader thread.
+     */
+    public List<HistoryStorage.Entry> asList() {
+        Cursor at = newestFirst();
+        return new AbstractList<HistoryStorage.Entry>() {
+            @Override
+            public HistoryStorage.Entry get(int index) {
+                if (index < 0 || index >= at.count) {
+                    throw new IndexOutOfBoundsException("index " + index + ", size " + at.count);
+                }
+                at.seek(at.to - 1 - index);
+                return at.entry();
+            }
+
+            @Override
+            public int size() {
+                return at.count;
+            }
+        };
+    }
+
+    /** Walks a fixed set of committed rows; appends made after it was opened are not seen. */
+    public static final class Cursor implements HistoryCursor {
+        private final Segment[] snapshot;
+        private final boolean newestFirst;
+        private final long from, to; // rows [from, to)
+        private final int count;
+        private long row;
+        private Segment segment;
+        private int i;
+
+        private Cursor(Segment[] snapshot, long from, long to, boolean newestFirst) {
+            this.snapshot = snapshot;
+            this.newestFirst = newestFirst;
+            this.to = to;
+            this.count = (int) Math.min(Integer.MAX_VALUE, Math.max(0, to - from));
+            this.from = to - count;
+            rewind();
+        }
+
+        @Override
+        public void rewind() {
+            row = newestFirst ? to : from - 1;
+        }
+
+        @Override
+        public boolean next() {
+            long next = row + (newestFirst ? -1 : 1);
+            if (next < from || next >= to) return false;
+            if (segment != null && next >= segment.firstRow && next < segment.firstRow + segment.count) {
+                row = next;
+                i = (int) (next - segment.firstRow);
+            } else {
+                seek(next);
+            }
+            return true;
+        }
+
+        private void seek(long r) {
+            row = r;
+            segment = segmentOf(snapshot, r);
+            i = (int) (r - segment.firstRow);
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public long timestamp() {
+            return segment.timestamp(i);
+        }
+
+        @Override
+        public float value(int column) {
+            return segment.value(column, i);
+        }
+
+        @Override
+        public int label() {
+            return segment.label(i);
+        }
+    }
+
+    /** Newest first; a fixed list. */
+    public List<HistoryStorage.Gap> getGaps() {
+        return gaps;
+    }
+
+    @Override
+    public String toString() {
+        return "history " + dir.getName() + " rows=" + size() + " segments=" + segments.length;
+    }
+}
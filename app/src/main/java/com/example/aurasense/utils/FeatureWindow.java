@@ -0,0 +1,167 @@
+package com.example.aurasense.utils;
+
+import java.util.Arrays;
+
+/**
+ * Time-based sliding window over a fixed number of float channels, keeping each channel's
+ * mean and population variance up to date as samples enter and leave. Samples live in a
+ * primitive ring, and the statistics use Welford's update run forwards on add and backwards
+ * on evict. Each sample costs O(1) and nothing is allocated once the ring has grown to the
+ * window's steady-state size.
+ *
+ * A NaN or infinite channel (the band reports a failed sensor read as missing) would poison
+ * the running sums until the next resync, so it is replaced by that channel's last finite
+ * value. A sample with a non-finite channel and nothing to carry forward is dropped.
+ *
+ * Not thread-safe; owned by the thread that feeds it. In the app that is the band's parse
+ * worker, through {@link InferenceExecutor#submit}; only the feature vector snapshotted from
+ * it crosses to the inference thread. The History screen keeps its own on its loader thread.
+ */
+public class FeatureWindow {
+
+    // Re-derive the running sums from the ring every so many evictions, so rounding error
+    // from the backwards updates cannot build up over hours of streaming
+    private static final int RESYNC_EVICTIONS = 1 << 14;
+
+    private final int channels;
+    private long[] times;
+    private float[] values; // row-major: [slot * channels + channel]
+    private int head;        // oldest sample
+    private int size;
+
+    private final double[] mean;
+    private final double[] m2;  // sum of squared deviations from the mean
+    private final float[] lastFinite;
+    private final boolean[] seen;
+    private int evictions;
+
+    public FeatureWindow(int channels, int initialCapacity) {
+        this.channels = channels;
+        int capacity = Math.max(1, initialCapacity);
+        this.times = new long[capacity];
+        this.values = new float[capacity * channels];
+        this.mean = new double[channels];
+        this.m2 = new double[channels];
+        this.lastFinite = new float[channels];
+        this.seen = new boolean[channels];
+    }
+
+    /**
+     * Appends one sample; {@code sample} holds one value per channel and is not retained.
+     * Returns false if it was dropped for a non-finite channel with no earlier value.
+     */
+    public boolean add(long timestampMs, float[] sample) {
+        for (int c = 0; c < channels; c++) {
+            if (!Float.isFinite(sample[c]) && !seen[c]) return false;
+        }
+        if (size == times.length) grow();
+        int slot = (head + size) % times.length;
+        times[slot] = timestampMs;
+        int base = slot * channels;
+        for (int c = 0; c < channels; c++) {
+            float x = sample[c];
+            if (Float.isFinite(x)) {
+                lastFinite[c] = x;
+                seen[c] = true;
+            } else {
+                x = lastFinite[c];
+            }
+            values[base + c] = x;
+        }
+        size++;
+        for (int c = 0; c < channels; c++) {
+            double x = values[base + c];
+            double delta = x - mean[c];
+            mean[c] += delta / size;
+            m2[c] += delta * (x - mean[c]);
+        }
+        return true;
+    }
+
+    /** Drops samples taken at or before {@code cutoffMs}. */
+    public void evictUpTo(long cutoffMs) {
+        while (size > 0 && times[head] <= cutoffMs) {
+            removeOldest();
+        }
+        if (evictions >= RESYNC_EVICTIONS) resync();
+    }
+
+    private void removeOldest() {
+        int base = head * channels;
+        head = (head + 1) % times.length;
+        size--;
+        evictions++;
+        if (size == 0) {
+            Arrays.fill(mean, 0d);
+            Arrays.fill(m2, 0d);
+            return;
+        }
+        for (int c = 0; c < channels; c++) {
+            double x = values[base + c];
+            double delta = x - mean[c];
+            mean[c] -= delta / size;
+            m2[c] = Math.max(0d, m2[c] - delta * (x - mean[c]));
+        }
+    }
+
+    private void resync() {
+        evictions = 0;
+        Arrays.fill(mean, 0d);
+        Arrays.fill(m2, 0d);
+        int n = 0;
+        for (int k = 0; k < size; k++) {
+            int base = ((head + k) % times.length) * channels;
+            n++;
+            for (int c = 0; c < channels; c++) {
+                double x = values[base + c];
+                double delta = x - mean[c];
+                mean[c] += delta / n;
+                m2[c] += delta * (x - mean[c]);
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        long[] t = new long[capacity];
+        float[] v = new float[capacity * channels];
+        for (int k = 0; k < size; k++) {
+            int slot = (head + k) % times.length;
+            t[k] = times[slot];
+            System.arraycopy(values, slot * channels, v, k * channels, channels);
+        }
+        times = t;
+        values = v;
+        head = 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        evictions = 0;
+        Arrays.fill(seen, false);
+        Arrays.fill(mean, 0d);
+        Arrays.fill(m2, 0d);
+    }
+
+    public int size() { return size; }
+    public int channels() { return channels; }
+
+    public long oldestTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : times[head];
+    }
+
+    /** Newest minus oldest sample time; 0 for fewer than two samples. */
+    public long spanMs() {
+        return size < 2 ? 0L : times[(head + size - 1) % times.length] - times[head];
+    }
+
+    public float mean(int channel) {
+        return (float) mean[channel];
+    }
+
+    /** Population standard deviation (divides by n, as the training features did). */
+    public float std(int channel) {
+        return size == 0 ? 0f : (float) Math.sqrt(m2[channel] / size);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.aurasense.utils;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_MAG;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_X;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_Y;
+import static com.example.aurasense.utils.HistoryCursor.COL_ACC_Z;
+import static com.example.aurasense.utils.HistoryCursor.COL_BPM;
+import static com.example.aurasense.utils.HistoryCursor.COL_BVP;
+import static com.example.aurasense.utils.HistoryCursor.COL_HRV;
+import static com.example.aurasense.utils.HistoryCursor.COL_TEMP;
+
+/**
+ * Bounded in-memory history of one band, as primitive columns: a ring of fixed-size chunks,
+ * each holding a long[] of timestamps, a float[] per sensor column and a byte[] of labels.
+ * Appending is O(1) and, once the buffer is full, drops the oldest row. A row costs its raw
+ * size, 45 bytes, with no per-row object; the ring has one chunk more than the capacity
+ * needs, which is being refilled while the oldest still holds rows in the window.
+ *
+ * One writer, any number of readers on other threads, and neither waits for the other.
+ * After each append the writer publishes an immutable {@link Snapshot} (the chunk table and
+ * the row count) through a volatile field. A reader walks the snapshot it picked up: rows
+ * past its count are never read, and a chunk is never reused once full. The writer starts
+ * every chunk in a fresh array set and swaps it into a copy of the table, so the rows a
+ * snapshot covers are never overwritten. A dropped chunk is garbage once no reader holds it.
+ *
+ * Reads go through {@link Cursor}s, which walk a fixed snapshot of the rows in either
+ * direction without allocating. A time range is found by binary search over the timestamps of the snapshot.
+ */
+public class HistoryBuffer {
+
+    public static final int CHUNK_ROWS = 1024;
+    // Float columns are COL_BPM..COL_BVP, stored at [column - 1]
+    private static final int FLOAT_COLUMNS = COL_BVP;
+
+    private static final class Chunk {
+        final long[] timestamp = new long[CHUNK_ROWS];
+        final float[][] values = new float[FLOAT_COLUMNS][CHUNK_ROWS];
+        final byte[] label = new byte[CHUNK_ROWS];
+    }
+
+    /** What readers see: the chunk table and how many rows had been appended. Never modified. */
+    private static final class Snapshot {
+        final Chunk[] table;
+        final long written; // rows ever appended; row p lives in slot p % slots
+
+        Snapshot(Chunk[] table, long written) {
+            this.table = table;
+            this.written = written;
+        }
+    }
+
+    private final int capacity;
+    private final int slots;
+    private volatile Snapshot published;
+
+    /** Keeps the newest {@code capacity} rows. */
+    public HistoryBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        // The chunk replaced when a new one starts must hold no row still in the window
+        int chunks = (this.capacity + 2 * CHUNK_ROWS - 2) / CHUNK_ROWS;
+        this.slots = chunks * CHUNK_ROWS;
+        this.published = new Snapshot(new Chunk[chunks], 0);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size(published);
+    }
+
+    private int size(Snapshot s) {
+        return (int) Math.min(s.written, capacity);
+    }
+
+    public void append(HistoryStorage.Entry e) {
+        append(e.timestamp, e.bpm, e.temp, e.hrv, e.accX, e.accY, e.accZ, e.accMag, e.bvp, e.label);
+    }
+
+    /** Writer only; the lock is uncontended except against {@link #clear()}. */
+    public synchronized void append(long timestamp, float bpm, float temp, float hrv, float accX, float accY,
+                                    float accZ, float accMag, float bvp, int label) {
+        Snapshot s = published;
+        int slot = (int) (s.written % slots);
+        int i = slot % CHUNK_ROWS;
+        Chunk[] table = s.table;
+        if (i == 0) {
+            // Starting a chunk: fresh arrays, so rows older snapshots cover stay intact
+            table = table.clone();
+            table[slot / CHUNK_ROWS] = new Chunk();
+        }
+        Chunk chunk = table[slot / CHUNK_ROWS];
+        // Past every published count, so no reader looks at this row yet
+        chunk.timestamp[i] = timestamp;
+        float[][] v = chunk.values;
+        v[COL_BPM - 1][i] = bpm;
+        v[COL_TEMP - 1][i] = temp;
+        v[COL_HRV - 1][i] = hrv;
+        v[COL_ACC_X - 1][i] = accX;
+        v[COL_ACC_Y - 1][i] = accY;
+        v[COL_ACC_Z - 1][i] = accZ;
+        v[COL_ACC_MAG - 1][i] = accMag;
+        v[COL_BVP - 1][i] = bvp;
+        chunk.label[i] = (byte) label;
+        published = new Snapshot(table, s.written + 1);
+    }
+
+    public synchronized void clear() {
+        published = new Snapshot(new Chunk[published.table.length], 0);
+    }
+
+    /** A cursor over the rows held now, newest first; rewinding keeps the same rows. */
+    public Cursor newestFirst() {
+        Snapshot s = published;
+        return new Cursor(s.table, s.written - size(s), s.written, true);
+    }
+
+    /** As {@link #newestFirst()}, oldest first. */
+    public Cursor oldestFirst() {
+        Snapshot s = published;
+        return new Cursor(s.table, s.written - size(s), s.written, false);
+    }
+
+    /**
+     * Rows held now with {@code fromMs <= timestamp < toMs}, oldest first; rewinding keeps
+     * the same rows.
+     */
+    public Cursor range(long fromMs, long toMs) {
+        Snapshot s = published;
+        long first = s.written - size(s);
+        long from = lowerBound(s, first, fromMs);
+        long to = toMs <= fromMs ? from : lowerBound(s, from, toMs);
+        return new Cursor(s.table, from, to, false);
+    }
+
+    /** The newest {@code n} rows held now, newest first; rewinding keeps the same rows. */
+    public Cursor latest(int n) {
+        Snapshot s = published;
+        int count = Math.min(size(s), Math.max(0, n));
+        return new Cursor(s.table, s.written - count, s.written, true);
+    }
+
+    /** First row from {@code first} on with a timestamp at or after {@code t}, or the row count. */
+    private long lowerBound(Snapshot s, long first, long t) {
+        long lo = first, hi = s.written;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            int slot = (int) (mid % slots);
+            if (s.table[slot / CHUNK_ROWS].timestamp[slot % CHUNK_ROWS] < t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Newest-first list over the rows held now; each get decodes an Entry. One reader thread. */
+    public List<HistoryStorage.Entry> asList() {
+        Cursor at = newestFirst();
+        return new AbstractList<HistoryStorage.Entry>() {
+            @Override
+            public HistoryStorage.Entry get(int index) {
+                if (index < 0 || index >= at.count) {
+                    throw new IndexOutOfBoundsException("index " + index + ", size " + at.count);
+                }
+                at.seek(at.last - index);
+                return at.entry();
+            }
+
+            @Override
+            public int size() {
+                return at.count;
+            }
+        };
+    }
+
+    /**
+     * Walks a fixed set of rows of the snapshot the buffer had published when the cursor was
+     * opened; rows appended since are not seen. One thread at a time.
+     */
+    public final class Cursor implements HistoryCursor {
+        private final boolean newestFirst;
+        private final Chunk[] table;
+        private final long first, last; // row numbers, inclusive
+        private final int count;
+        private long row;
+        private Chunk chunk;
+        private int i;
+
+        /** Rows [from, to) of a snapshot's table. */
+        private Cursor(Chunk[] table, long from, long to, boolean newestFirst) {
+            this.newestFirst = newestFirst;
+            this.table = table;
+            this.first = from;
+            this.last = to - 1;
+            this.count = (int) (to - from);
+            rewind();
+        }
+
+        @Override
+        public void rewind() {
+            row = newestFirst ? last + 1 : first - 1;
+        }
+
+        @Override
+        public boolean next() {
+            long next = row + (newestFirst ? -1 : 1);
+            if (next < first || next > last) return false;
+            seek(next);
+            return true;
+        }
+
+        private void seek(long r) {
+            row = r;
+            int slot = (int) (r % slots);
+            chunk = table[slot / CHUNK_ROWS];
+            i = slot % CHUNK_ROWS;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public long timestamp() {
+            return chunk.timestamp[i];
+        }
+
+        @Override
+        public float value(int column) {
+            return chunk.values[column - 1][i];
+        }
+
+        @Override
+        public int label() {
+            return chunk.label[i];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "buffer rows=" + size() + "/" + capacity + " chunks=" + published.table.length;
+    }
+}
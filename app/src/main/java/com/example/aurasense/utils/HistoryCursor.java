@@ -0,0 +1,54 @@
+package com.example.aurasense.utils;
+
+/**
+ * Walks stored history one row at a time, newest or oldest first depending on how it was
+ * opened, reading the columns in place. Nothing is allocated per row, and a cursor can be
+ * rewound and walked again.
+ */
+public interface HistoryCursor {
+
+    // Columns of a history row, in storage order
+    int COL_TIMESTAMP = 0;
+    int COL_BPM = 1;
+    int COL_TEMP = 2;
+    int COL_HRV = 3;
+    int COL_ACC_X = 4;
+    int COL_ACC_Y = 5;
+    int COL_ACC_Z = 6;
+    int COL_ACC_MAG = 7;
+    int COL_BVP = 8;
+    int COL_LABEL = 9;
+    int COLUMNS = 10;
+
+    /** Moves to the next row; false once there are none left. */
+    boolean next();
+
+    /** Back to before the first row; the rows walked stay the same. */
+    void rewind();
+
+    /** Rows this cursor walks in total. */
+    int count();
+
+    long timestamp();
+
+    /** One of the float columns, {@link #COL_BPM} to {@link #COL_BVP}. */
+    float value(int column);
+
+    /** Live model label stored with the row, or {@link HistoryStorage.Entry#LABEL_NONE}. */
+    int label();
+
+    default float bpm() { return value(COL_BPM); }
+    default float temp() { return value(COL_TEMP); }
+    default float hrv() { return value(COL_HRV); }
+    default float accX() { return value(COL_ACC_X); }
+    default float accY() { return value(COL_ACC_Y); }
+    default float accZ() { return value(COL_ACC_Z); }
+    default float accMag() { return value(COL_ACC_MAG); }
+    default float bvp() { return value(COL_BVP); }
+
+    /** The current row as an Entry, for code that keeps rows around. */
+    default HistoryStorage.Entry entry() {
+        return new HistoryStorage.Entry(timestamp(), bpm(), temp(), hrv(), accX(), accY(), accZ(),
+                accMag(), bvp(), label());
+    }
+}
@@ -1,15 +1,51 @@
 package com.example.aurasense.utils;
 
-import java.util.ArrayList;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 
+/**
+ * Sensor history per band. Once {@link #init} has run, every band's samples and gaps are kept
+ * on disk in a {@link ColumnarHistoryStore} and outlive the process; before that, or if the
+ * store can't be used, the newest samples are kept in a bounded {@link HistoryBuffer} for
+ * this process only. Either way {@link #newestFirst} and {@link #oldestFirst} walk them
+ * without allocating per row, {@link #range} and {@link #latest} find a time window or the
+ * newest rows by binary search instead of walking everything, and {@link #project} copies out
+ * only the columns a screen plots.
+ *
+ * Each band's stream has one writer, its parse worker, and is read from the UI thread. Reads
+ * never lock and never block ingest: every cursor and list returned here is a snapshot of the
+ * rows stored when it was taken, unaffected by later appends.
+ */
 public class HistoryStorage {
     public static class Entry {
+        /** No model label was known when the sample was stored. */
+        public static final int LABEL_NONE = -1;
+
         public final long timestamp;
         public final float bpm, temp, hrv, accX, accY, accZ, accMag, bvp; // Added bvp
+        /** Live model label at the time of the sample, or {@link #LABEL_NONE}. */
+        public final int label;
 
         public Entry(long timestamp, float bpm, float temp, float hrv,
                      float accX, float accY, float accZ, float accMag, float bvp) {
+            this(timestamp, bpm, temp, hrv, accX, accY, accZ, accMag, bvp, LABEL_NONE);
+        }
+
+        public Entry(long timestamp, float bpm, float temp, float hrv,
+                     float accX, float accY, float accZ, float accMag, float bvp, int label) {
             this.timestamp = timestamp;
             this.bpm = bpm;
             this.temp = temp;
@@ -19,20 +55,352 @@ public class HistoryStorage {
             this.accZ = accZ;
             this.accMag = accMag;
             this.bvp = bvp; // assign bvp
+            this.label = label;
+        }
+    }
+
+    /**
+     * Some columns of a run of rows, copied out of a cursor into primitive arrays in the
+     * cursor's order. Columns that were not asked for are neither read nor allocated.
+     */
+    public static class Columns {
+        public final int count;
+        public final long[] timestamps;
+        private final float[][] values = new float[HistoryCursor.COLUMNS][];
+        private final byte[] labels;
+
+        Columns(int count, long[] timestamps, byte[] labels) {
+            this.count = count;
+            this.timestamps = timestamps;
+            this.labels = labels;
+        }
+
+        /** One of the projected float columns, COL_BPM to COL_BVP. */
+        public float[] get(int column) {
+            float[] v = column >= 0 && column < values.length ? values[column] : null;
+            if (v == null) throw new IllegalArgumentException("Column " + column + " was not projected");
+            return v;
+        }
+
+        /** Model label of row i, or {@link Entry#LABEL_NONE}; needs {@link HistoryCursor#COL_LABEL}. */
+        public int label(int i) {
+            if (labels == null) throw new IllegalArgumentException("Labels were not projected");
+            return labels[i];
+        }
+    }
+
+    /** Stretch of time with no samples because frames were lost between band and phone. */
+    public static class Gap {
+        public final long fromTimestamp, toTimestamp;
+
+        public Gap(long fromTimestamp, long toTimestamp) {
+            this.fromTimestamp = fromTimestamp;
+            this.toTimestamp = toTimestamp;
+        }
+    }
+
+    // One history stream per band, keyed by device address. The screens read the
+    // primary band's stream through the address-less methods.
+    private static final String DEFAULT_DEVICE = "";
+    private static final String TAG = "HistoryStorage";
+    private static final String HISTORY_DIR = "history";
+    private static final String PREFS = "AuraHistory";
+    private static final String KEY_PRIMARY_DEVICE = "primary_device";
+
+    // In-memory fallback: 24h at the 2s history cadence, ~2 MB per band
+    public static final int DEFAULT_MEMORY_ROWS = 43200;
+    private static final HistoryCursor EMPTY = new HistoryBuffer(1).newestFirst();
+
+    // On disk once init() has run; the buffers only hold streams whose store could not be opened
+    private static final ConcurrentHashMap<String, ColumnarHistoryStore> stores = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, HistoryBuffer> streams = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, List<Gap>> gaps = new ConcurrentHashMap<>();
+    // Bands whose store failed; kept in memory for the rest of the process, never reopened
+    private static final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private static volatile String primaryDevice = DEFAULT_DEVICE;
+    private static volatile int memoryRows = DEFAULT_MEMORY_ROWS;
+    private static volatile File historyDir;
+    private static SharedPreferences prefs;
+    // Set by the first init(); counts down once its background open has finished
+    private static volatile CountDownLatch opening;
+
+    /**
+     * Remembers which band is the primary one and starts opening the on-disk history of every
+     * band seen before. Call from each screen's onCreate that reads or writes history; only the
+     * first call does any work, and it returns without waiting for the open: listing and
+     * mapping the segments grows with the history kept, so it runs on a thread of its own.
+     * Reads and writes that come before it has finished wait for it.
+     */
+    public static synchronized void init(Context context) {
+        if (opening != null) return;
+        Context app = context.getApplicationContext();
+        prefs = app.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        primaryDevice = prefs.getString(KEY_PRIMARY_DEVICE, primaryDevice);
+        CountDownLatch latch = new CountDownLatch(1);
+        opening = latch;
+        Thread t = new Thread(() -> {
+            try {
+                openStores(new File(app.getFilesDir(), HISTORY_DIR));
+            } finally {
+                latch.countDown();
+            }
+        }, "aura-history-open");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void openStores(File dir) {
+        File[] bands = dir.listFiles(File::isDirectory);
+        if (bands != null) {
+            for (File band : bands) {
+                String address = addressOf(band.getName());
+                if (address == null) continue;
+                try {
+                    stores.put(address, ColumnarHistoryStore.open(band));
+                } catch (IOException e) {
+                    Log.e(TAG, "Cannot open history of " + address, e);
+                    failed.add(address);
+                }
+            }
         }
+        historyDir = dir;
+        Log.d(TAG, "History opened: " + stores.values());
+    }
+
+    // Until init()'s open is done a band's existing store may not be in the map yet
+    private static void awaitOpen() {
+        CountDownLatch latch = opening;
+        if (latch == null || latch.getCount() == 0) return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Directory per band: "d" + hex of the address, so any address (including "") is a valid name
+    private static String dirNameOf(String deviceAddress) {
+        StringBuilder sb = new StringBuilder("d");
+        for (byte b : deviceAddress.getBytes(StandardCharsets.UTF_8)) sb.append(String.format(Locale.US, "%02x", b));
+        return sb.toString();
+    }
+
+    private static String addressOf(String dirName) {
+        if (!dirName.startsWith("d") || dirName.length() % 2 == 0) return null;
+        byte[] bytes = new byte[(dirName.length() - 1) / 2];
+        try {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(dirName.substring(1 + 2 * i, 3 + 2 * i), 16);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Null before init() or once the band's store has failed
+    private static ColumnarHistoryStore storeFor(String deviceAddress, boolean create) {
+        awaitOpen();
+        ColumnarHistoryStore store = stores.get(deviceAddress);
+        File dir = historyDir;
+        if (store != null || !create || dir == null || failed.contains(deviceAddress)) return store;
+        synchronized (HistoryStorage.class) {
+            store = stores.get(deviceAddress);
+            if (store == null) {
+                try {
+                    store = ColumnarHistoryStore.open(new File(dir, dirNameOf(deviceAddress)));
+                    stores.put(deviceAddress, store);
+                } catch (IOException e) {
+                    Log.e(TAG, "Cannot create history for " + deviceAddress + ", keeping it in memory", e);
+                    failed.add(deviceAddress);
+                }
+            }
+        }
+        return store;
+    }
+
+    /** Rows each in-memory stream keeps; applies to streams created afterwards. */
+    public static void setMemoryCapacity(int rows) {
+        memoryRows = rows;
     }
 
-    private static final List<Entry> history = new ArrayList<>();
+    public static void setPrimaryDevice(String deviceAddress) {
+        primaryDevice = deviceAddress != null ? deviceAddress : DEFAULT_DEVICE;
+        SharedPreferences p = prefs;
+        if (p != null) p.edit().putString(KEY_PRIMARY_DEVICE, primaryDevice).apply();
+    }
+
+    public static String getPrimaryDevice() {
+        return primaryDevice;
+    }
 
     public static void add(Entry entry) {
-        history.add(0, entry);  // newest first
+        add(primaryDevice, entry);
+    }
+
+    /** One writer per band: the band's parse worker. */
+    public static void add(String deviceAddress, Entry entry) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, true);
+        if (store != null) {
+            try {
+                store.append(entry);
+                return;
+            } catch (IOException e) {
+                Log.e(TAG, "History append failed for " + deviceAddress + ", keeping it in memory", e);
+                failed.add(deviceAddress);
+                stores.remove(deviceAddress, store);
+            }
+        }
+        HistoryBuffer history = streams.get(deviceAddress);
+        if (history == null) {
+            history = new HistoryBuffer(memoryRows);
+            HistoryBuffer raced = streams.putIfAbsent(deviceAddress, history);
+            if (raced != null) history = raced;
+        }
+        history.append(entry);
+    }
+
+    public static void addGap(String deviceAddress, Gap gap) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, true);
+        if (store != null) {
+            try {
+                store.appendGap(gap);
+                return;
+            } catch (IOException e) {
+                Log.e(TAG, "Gap append failed for " + deviceAddress + ", keeping it in memory", e);
+                failed.add(deviceAddress);
+                stores.remove(deviceAddress, store);
+            }
+        }
+        List<Gap> list = gaps.get(deviceAddress);
+        if (list == null) {
+            list = new CopyOnWriteArrayList<>();
+            List<Gap> raced = gaps.putIfAbsent(deviceAddress, list);
+            if (raced != null) list = raced;
+        }
+        list.add(0, gap);  // newest first
+    }
+
+    public static List<Gap> getGaps(String deviceAddress) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.getGaps();
+        List<Gap> list = gaps.get(deviceAddress);
+        return list != null ? list : Collections.<Gap>emptyList();
     }
 
     public static List<Entry> getHistory() {
-        return history;
+        return getHistory(primaryDevice);
+    }
+
+    /**
+     * Newest first. From disk this is a fixed view of the rows stored so far, decoded from the
+     * mapped columns as it is read, so long histories are not copied onto the heap.
+     */
+    public static List<Entry> getHistory(String deviceAddress) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.asList();
+        HistoryBuffer history = streams.get(deviceAddress);
+        return history != null ? history.asList() : Collections.<Entry>emptyList();
+    }
+
+    /** The primary band's rows stored so far, newest first. */
+    public static HistoryCursor newestFirst() {
+        return newestFirst(primaryDevice);
+    }
+
+    public static HistoryCursor newestFirst(String deviceAddress) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.newestFirst();
+        HistoryBuffer history = streams.get(deviceAddress);
+        return history != null ? history.newestFirst() : EMPTY;
+    }
+
+    /** The primary band's rows stored so far, oldest first. */
+    public static HistoryCursor oldestFirst() {
+        return oldestFirst(primaryDevice);
+    }
+
+    public static HistoryCursor oldestFirst(String deviceAddress) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.oldestFirst();
+        HistoryBuffer history = streams.get(deviceAddress);
+        return history != null ? history.oldestFirst() : EMPTY;
+    }
+
+    /** The primary band's rows with {@code fromMs <= timestamp < toMs}, oldest first. */
+    public static HistoryCursor range(long fromMs, long toMs) {
+        return range(primaryDevice, fromMs, toMs);
+    }
+
+    public static HistoryCursor range(String deviceAddress, long fromMs, long toMs) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.range(fromMs, toMs);
+        HistoryBuffer history = streams.get(deviceAddress);
+        return history != null ? history.range(fromMs, toMs) : EMPTY;
+    }
+
+    /** The primary band's newest {@code n} rows, newest first. */
+    public static HistoryCursor latest(int n) {
+        return latest(primaryDevice, n);
+    }
+
+    public static HistoryCursor latest(String deviceAddress, int n) {
+        ColumnarHistoryStore store = storeFor(deviceAddress, false);
+        if (store != null) return store.latest(n);
+        HistoryBuffer history = streams.get(deviceAddress);
+        return history != null ? history.latest(n) : EMPTY;
+    }
+
+    /**
+     * Copies the given columns of every row the cursor walks, from its start. Timestamps are
+     * always included; from disk, only the pages of the requested columns are touched.
+     */
+    public static Columns project(HistoryCursor cursor, int... columns) {
+        int count = cursor.count();
+        boolean withLabels = false;
+        for (int column : columns) {
+            if (column < HistoryCursor.COL_TIMESTAMP || column >= HistoryCursor.COLUMNS) {
+                throw new IllegalArgumentException("No column " + column);
+            }
+            if (column == HistoryCursor.COL_LABEL) withLabels = true;
+        }
+        Columns out = new Columns(count, new long[count], withLabels ? new byte[count] : null);
+        for (int column : columns) {
+            if (column > HistoryCursor.COL_TIMESTAMP && column < HistoryCursor.COL_LABEL && out.values[column] == null) {
+                out.values[column] = new float[count];
+            }
+        }
+        cursor.rewind();
+        int i = 0;
+        while (i < count && cursor.next()) {
+            out.timestamps[i] = cursor.timestamp();
+            for (int column = HistoryCursor.COL_BPM; column < HistoryCursor.COL_LABEL; column++) {
+                float[] v = out.values[column];
+                if (v != null) v[i] = cursor.value(column);
+            }
+            if (withLabels) out.labels[i] = (byte) cursor.label();
+            i++;
+        }
+        return out;
+    }
+
+    public static Set<String> getDeviceAddresses() {
+        awaitOpen();
+        Set<String> addresses = new HashSet<>(stores.keySet());
+        addresses.addAll(streams.keySet());
+        return Collections.unmodifiableSet(addresses);
     }
 
+    /** Deletes every band's history, on disk and in memory. Deletes files; keep it off the main thread. */
     public static void clearHistory() {
-        history.clear();
+        awaitOpen();
+        for (ColumnarHistoryStore store : stores.values()) store.clear();
+        for (HistoryBuffer history : streams.values()) history.clear();
+        for (List<Gap> list : gaps.values()) list.clear();
     }
 }
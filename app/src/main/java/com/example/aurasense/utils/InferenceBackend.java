@@ -0,0 +1,33 @@
+package com.example.aurasense.utils;
+
+/**
+ * A runtime that can score the stress model: standardized [N,10] feature rows in, labels
+ * (and class probabilities where the model has them) out. {@link ModelRegistry} holds one
+ * backend per process and {@link BackendBenchmark} picks which runtime that is.
+ */
+public interface InferenceBackend {
+
+    enum Kind { ONNX, TFLITE, JAVA }
+
+    /** One consumer's single-row path, with its input buffers allocated once. */
+    interface Runner {
+        /** Raw model label for one row of {@link TFLiteEmotionInterpreter#NUM_FEATURES} features. */
+        int run(float[] scaledFeatures) throws Exception;
+
+        void close();
+    }
+
+    Kind kind();
+
+    /** A runner for one consumer; runners may be used concurrently with each other. */
+    Runner newRunner() throws Exception;
+
+    /** See {@link TFLiteEmotionInterpreter#predictBatch}. Safe to call from any thread. */
+    TFLiteEmotionInterpreter.BatchResult predictBatch(float[] scaledFeatures, int count) throws Exception;
+
+    /** One throwaway run, so the first real prediction doesn't pay for allocator and kernel setup. */
+    void warmUp() throws Exception;
+
+    /** Frees the runtime's native memory; every runner must have been closed. */
+    void close();
+}
@@ -0,0 +1,239 @@
+package com.example.aurasense.utils;
+
+import android.util.Log;
+
+import com.example.aurasense.ble.SampleBatch;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the emotion model for every band on one inference thread, on a fixed hop of sample
+ * time rather than per packet.
+ *
+ * Samples go into each band's {@link FeatureWindow} on the caller's thread (the band's parse
+ * worker), which is O(1) per sample. Once per hop the window's features are snapshotted and
+ * handed to the inference thread. If the model is still busy with an earlier snapshot of the
+ * same band, the newer one replaces it (latest wins), so inference CPU scales with the hop and
+ * never with the packet rate. Results go to every {@link Subscriber}.
+ *
+ * A band can also run a secondary model on the same snapshots ({@link #setSecondaryModel});
+ * it runs on a thread of its own through {@link MultiModelRunner} and never delays the
+ * primary's result.
+ */
+public class InferenceExecutor {
+
+    public interface Subscriber {
+        /** Inference thread. {@code label} is the smoothed label, or -1 if the model failed. */
+        void onPrediction(String bandAddress, int label, long windowEndMs);
+    }
+
+    public static final long DEFAULT_HOP_MS = 5000L;
+    // How long the final task waits for a secondary run still in progress
+    private static final long SECONDARY_STOP_SECONDS = 2;
+
+    private static final String TAG = "InferenceExecutor";
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aura-inference");
+        t.setDaemon(true);
+        return t;
+    });
+    // Secondary models of all bands; each band has at most one window in flight there
+    private final ExecutorService secondaryWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aura-inference-2");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Band> bands = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long hopMs;
+    private volatile boolean shutdown;
+
+    private static final class Snapshot {
+        final float[] features = new float[TFLiteEmotionInterpreter.NUM_FEATURES];
+        long windowEndMs;
+    }
+
+    private final class Band {
+        final String address;
+        final MultiModelRunner models;
+
+        // Producer (parse worker) only
+        final FeatureWindow window = TFLiteEmotionInterpreter.newFeatureWindow();
+        final float[] sample = new float[TFLiteEmotionInterpreter.CHANNELS];
+        long nextHopMs = Long.MIN_VALUE;
+
+        final AtomicReference<Snapshot> latest = new AtomicReference<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final Runnable drainTask = this::drain;
+        volatile long snapshots;
+        volatile long runs;
+        volatile long coalesced;
+        volatile long busyNanos;
+
+        Band(String address, TFLiteEmotionInterpreter interpreter) {
+            this.address = address;
+            this.models = new MultiModelRunner(interpreter, secondaryWorker,
+                    MultiModelRunner.DEFAULT_PRIMARY_BUDGET_MS, MultiModelRunner.DEFAULT_SECONDARY_BUDGET_MS);
+        }
+
+        void publish(Snapshot s) {
+            snapshots++;
+            if (latest.getAndSet(s) != null) coalesced++;
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    worker.execute(drainTask);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false); // shut down meanwhile
+                }
+            }
+        }
+
+        // Inference thread
+        private void drain() {
+            while (true) {
+                Snapshot s;
+                while (!shutdown && (s = latest.getAndSet(null)) != null) {
+                    long start = System.nanoTime();
+                    int label = models.predict(s.features);
+                    busyNanos += System.nanoTime() - start;
+                    runs++;
+                    for (Subscriber sub : subscribers) {
+                        try {
+                            sub.onPrediction(address, label, s.windowEndMs);
+                        } catch (RuntimeException e) {
+                            Log.e(TAG, "Subscriber failed for " + address, e);
+                        }
+                    }
+                }
+                scheduled.set(false);
+                // A snapshot published between the last poll and clearing the flag must not be stranded
+                if (shutdown || latest.get() == null || !scheduled.compareAndSet(false, true)) return;
+            }
+        }
+
+        @Override
+        public String toString() {
+            long n = runs;
+            return String.format(Locale.US, "inference %s snapshots=%d runs=%d coalesced=%d avg=%.1fms",
+                    address, snapshots, n, coalesced, n == 0 ? 0f : busyNanos / 1e6f / n) + "\n  " + models;
+        }
+    }
+
+    public InferenceExecutor() {
+        this(DEFAULT_HOP_MS);
+    }
+
+    public InferenceExecutor(long hopMs) {
+        this.hopMs = hopMs;
+    }
+
+    /** Takes over scoring for {@code address}; the interpreter must not be used elsewhere meanwhile. */
+    public void addBand(String address, TFLiteEmotionInterpreter interpreter) {
+        bands.put(address, new Band(address, interpreter));
+    }
+
+    /**
+     * Runs {@code interpreter} as the secondary model for {@code address}, next to the one it
+     * was added with; it must not be used elsewhere meanwhile. Returns false if the band
+     * hasn't been added.
+     */
+    public boolean setSecondaryModel(String address, TFLiteEmotionInterpreter interpreter) {
+        Band band = bands.get(address);
+        if (band == null) return false;
+        band.models.setSecondary(interpreter);
+        return true;
+    }
+
+    public boolean hasBand(String address) {
+        return bands.containsKey(address);
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /** Sample time between model runs for a band; takes effect at each band's next hop. */
+    public void setHopMs(long hopMs) {
+        this.hopMs = hopMs;
+    }
+
+    public long getHopMs() {
+        return hopMs;
+    }
+
+    /**
+     * Band's parse worker: feeds the worn rows of {@code batch} into the band's window and
+     * snapshots it when a hop is due. The batch is not retained. A gap in the stream restarts
+     * the window, so no window spans missing data.
+     */
+    public void submit(String address, SampleBatch batch) {
+        Band band = bands.get(address);
+        if (band == null || shutdown) return;
+        long hop = hopMs;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.isAfterGap(i)) {
+                band.window.clear();
+                band.nextHopMs = Long.MIN_VALUE;
+            }
+            if (!batch.isWorn(i)) continue;
+
+            long t = batch.timestampMs[i];
+            TFLiteEmotionInterpreter.toModelChannels(batch.accX[i], batch.accY[i], batch.accZ[i],
+                    batch.temp[i], batch.bvp[i], band.sample);
+            band.window.add(t, band.sample);
+            band.window.evictUpTo(t - TFLiteEmotionInterpreter.WINDOW_MS);
+            if (!TFLiteEmotionInterpreter.isWindowReady(band.window)) continue;
+            if (band.nextHopMs != Long.MIN_VALUE && t < band.nextHopMs) continue;
+
+            band.nextHopMs = t + hop;
+            Snapshot s = new Snapshot();
+            TFLiteEmotionInterpreter.scaledFeatures(band.window, s.features, 0);
+            s.windowEndMs = t;
+            band.publish(s);
+        }
+    }
+
+    /**
+     * Stops the inference threads without waiting for them, so it is safe on the UI thread.
+     * Queued work is dropped; {@code afterLastRun} runs on the inference thread once the runs
+     * in progress on both threads have finished, and is where the interpreters get closed.
+     */
+    public void shutdown(Runnable afterLastRun) {
+        shutdown = true;
+        secondaryWorker.shutdownNow();
+        try {
+            worker.execute(() -> {
+                try {
+                    secondaryWorker.awaitTermination(SECONDARY_STOP_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                afterLastRun.run();
+            });
+        } catch (RejectedExecutionException e) {
+            afterLastRun.run(); // already shut down; nothing runs any more
+        }
+        worker.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("inference hop=").append(hopMs).append("ms");
+        for (Band band : bands.values()) sb.append('\n').append(band);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A model bundled in the APK's assets, read in place: the asset is stored uncompressed and
+ * memory-mapped straight out of the APK, so it is never copied to internal storage. Its
+ * content hash keys everything cached from it (tuned session options, the optimized graph).
+ * Hashing reads the whole asset, so the hash is remembered per APK install and only
+ * recomputed after an app update; the bytes themselves are only mapped when a session has
+ * to be built from them.
+ */
+final class ModelAsset {
+    private static final String TAG = "ModelAsset";
+    private static final String PREFS = "AuraModel";
+    private static final String KEY_HASH = "asset_hash_";
+    private static final String KEY_HASH_STAMP = "asset_hash_stamp_";
+    private static final int HASH_CHARS = 16;
+
+    private final Context context;
+    final String name;
+    final String hash;
+    private ByteBuffer contents;
+    private byte[] bytes;
+
+    private ModelAsset(Context context, String name, String hash, ByteBuffer contents) {
+        this.context = context;
+        this.name = name;
+        this.hash = hash;
+        this.contents = contents;
+    }
+
+    /** Whether the APK bundles {@code name}; optional models simply aren't shipped. */
+    static boolean exists(Context context, String name) {
+        try {
+            String[] assets = context.getAssets().list("");
+            return assets != null && Arrays.asList(assets).contains(name);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static ModelAsset open(Context context, String name) throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String stamp = String.valueOf(installStamp(context));
+        String hash = stamp.equals(prefs.getString(KEY_HASH_STAMP + name, null))
+                ? prefs.getString(KEY_HASH + name, null) : null;
+        if (hash != null) return new ModelAsset(context, name, hash, null);
+
+        ByteBuffer contents = map(context, name);
+        hash = sha256(contents.duplicate());
+        prefs.edit().putString(KEY_HASH + name, hash).putString(KEY_HASH_STAMP + name, stamp).apply();
+        Log.d(TAG, name + ": " + contents.capacity() + " bytes, hash " + hash);
+        return new ModelAsset(context, name, hash, contents);
+    }
+
+    /** File name without the extension, e.g. {@code stress_model}. */
+    String baseName() {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /** The mapped model, a direct buffer as TFLite takes it. Kept for this object's lifetime. */
+    ByteBuffer buffer() throws IOException {
+        if (contents == null) contents = map(context, name);
+        return contents;
+    }
+
+    /**
+     * The model bytes for {@code OrtEnvironment.createSession(byte[], ...)}, the only in-memory
+     * form onnxruntime 1.16 accepts. Copied out of the mapping once, and only when a session
+     * has to be built from the model itself; gone with this object once loading is done.
+     */
+    byte[] bytes() throws IOException {
+        if (bytes == null) {
+            ByteBuffer b = buffer().duplicate();
+            b.rewind();
+            bytes = new byte[b.remaining()];
+            b.get(bytes);
+            contents = null;
+        }
+        return bytes;
+    }
+
+    private static ByteBuffer map(Context context, String name) throws IOException {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(name);
+             FileInputStream in = fd.createInputStream();
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+        } catch (FileNotFoundException compressed) {
+            // openFd only works for assets stored uncompressed (see noCompress in the build)
+            Log.w(TAG, name + " is compressed in the APK; reading it into memory");
+            try (InputStream is = context.getAssets().open(name)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                int length;
+                while ((length = is.read(buffer)) > 0) out.write(buffer, 0, length);
+                ByteBuffer direct = ByteBuffer.allocateDirect(out.size()).order(ByteOrder.nativeOrder());
+                direct.put(out.toByteArray()).rewind();
+                return direct;
+            }
+        }
+    }
+
+    private static String sha256(ByteBuffer contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contents);
+            StringBuilder sb = new StringBuilder(HASH_CHARS);
+            for (byte b : digest.digest()) {
+                if (sb.length() >= HASH_CHARS) break;
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Changes whenever a new APK (and so possibly a new asset) is installed
+    private static long installStamp(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the emotion model. Its {@link InferenceBackend} is loaded once, on a
+ * background thread, and warmed up with one inference before anyone gets it; every screen and band then
+ * gets a lightweight {@link TFLiteEmotionInterpreter} with its own window and smoothing over
+ * that one shared backend. Interpreters are reference counted: closing the last one frees
+ * the backend's native memory, and the next {@link #acquire} loads it again.
+ *
+ * The secondary model behind Settings' "Model 2" is held the same way, in its own slot.
+ */
+public final class ModelRegistry {
+
+    public interface Callback {
+        /** Main thread. The caller owns {@code interpreter} and must close() it when done. */
+        void onModelReady(TFLiteEmotionInterpreter interpreter);
+
+        /** Main thread. Nothing to close; a later acquire retries the load. */
+        void onModelFailed(Exception error);
+    }
+
+    public interface LoadListener {
+        /** Main thread. {@code ready} is false if the model failed to load. */
+        void onModelLoaded(boolean ready);
+    }
+
+    private interface Opener {
+        InferenceBackend open(Context context) throws Exception;
+    }
+
+    private static final String TAG = "ModelRegistry";
+    private static final ModelRegistry INSTANCE = new ModelRegistry();
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aura-model-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** One reference-counted model; fields guarded by the registry. */
+    static final class Slot {
+        final String name;
+        final Opener opener;
+        // The model is loaded or loading whenever this is non-null
+        CompletableFuture<InferenceBackend> model;
+        int users;
+        int loads;
+
+        Slot(String name, Opener opener) {
+            this.name = name;
+            this.opener = opener;
+        }
+
+        @Override
+        public String toString() {
+            String state = model == null ? "unloaded" : model.isDone() ? "loaded" : "loading";
+            return name + " " + state + " users=" + users + " loads=" + loads;
+        }
+    }
+
+    // The backend picked for this device, comparing them first on the very first load
+    private final Slot primary = new Slot("model", BackendBenchmark::openPreferred);
+    private final Slot secondary = new Slot("model 2", this::openSecondary);
+
+    public static ModelRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private ModelRegistry() { }
+
+    /** Starts loading the model in the background if it isn't already; returns at once. */
+    public void preload(Context context) {
+        preload(context, null);
+    }
+
+    /** As {@link #preload(Context)}, telling {@code listener} when the load has finished. */
+    public void preload(Context context, LoadListener listener) {
+        CompletableFuture<InferenceBackend> future;
+        synchronized (this) {
+            future = loading(primary, context);
+        }
+        if (listener != null) {
+            future.whenComplete((loaded, error) -> mainHandler.post(() -> listener.onModelLoaded(error == null)));
+        }
+    }
+
+    public synchronized boolean isLoaded() {
+        return primary.model != null && primary.model.isDone() && !primary.model.isCompletedExceptionally();
+    }
+
+    /**
+     * Hands {@code callback} a new interpreter once the model is loaded, immediately (on the
+     * next main-loop turn) if another consumer already holds it.
+     */
+    public void acquire(Context context, Callback callback) {
+        acquire(primary, context, callback);
+    }
+
+    /**
+     * As {@link #acquire}, for the secondary model: the first bundled backend of another kind
+     * than the primary's, scoring the same features. Fails if only one model is bundled.
+     * Acquire it while holding a primary interpreter, so the kinds are compared against a
+     * loaded primary.
+     */
+    public void acquireSecondary(Context context, Callback callback) {
+        acquire(secondary, context, callback);
+    }
+
+    private void acquire(Slot slot, Context context, Callback callback) {
+        CompletableFuture<InferenceBackend> future;
+        synchronized (this) {
+            future = loading(slot, context);
+            slot.users++;
+        }
+        future.whenComplete((loaded, error) -> mainHandler.post(() -> {
+            if (error != null) {
+                abandon(slot, future);
+                callback.onModelFailed(unwrap(error));
+                return;
+            }
+            TFLiteEmotionInterpreter interpreter;
+            try {
+                interpreter = new TFLiteEmotionInterpreter(loaded, this, slot);
+            } catch (Exception e) {
+                release(slot);
+                callback.onModelFailed(e);
+                return;
+            }
+            callback.onModelReady(interpreter);
+        }));
+    }
+
+    private CompletableFuture<InferenceBackend> loading(Slot slot, Context context) {
+        if (slot.model == null || slot.model.isCompletedExceptionally()) {
+            Context app = context.getApplicationContext();
+            slot.model = CompletableFuture.supplyAsync(() -> load(slot, app), loader);
+        }
+        return slot.model;
+    }
+
+    private InferenceBackend load(Slot slot, Context context) {
+        long start = SystemClock.elapsedRealtime();
+        InferenceBackend loaded;
+        try {
+            loaded = slot.opener.open(context);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to load " + slot.name, e);
+            throw new CompletionException(e);
+        }
+        try {
+            loaded.warmUp();
+        } catch (Exception e) {
+            Log.w(TAG, "Warm-up inference failed", e);
+        }
+        int count;
+        synchronized (this) {
+            count = ++slot.loads;
+        }
+        Log.d(TAG, loaded.kind() + " " + slot.name + " ready in " + (SystemClock.elapsedRealtime() - start)
+                + "ms (load #" + count + ")");
+        return loaded;
+    }
+
+    // Loader thread; loads run in order, so a primary requested earlier is already done
+    private InferenceBackend openSecondary(Context context) throws Exception {
+        CompletableFuture<InferenceBackend> current;
+        synchronized (this) {
+            current = primary.model;
+        }
+        InferenceBackend.Kind primaryKind = current != null && current.isDone() && !current.isCompletedExceptionally()
+                ? current.join().kind() : InferenceBackend.Kind.ONNX;
+        for (InferenceBackend.Kind kind : BackendBenchmark.available(context)) {
+            if (kind != primaryKind) return BackendBenchmark.open(context, kind);
+        }
+        throw new IllegalStateException("No second model bundled besides " + primaryKind);
+    }
+
+    /** Called by {@link TFLiteEmotionInterpreter#close()}. */
+    synchronized void release(Slot slot) {
+        if (--slot.users > 0 || slot.model == null) return;
+        CompletableFuture<InferenceBackend> last = slot.model;
+        slot.model = null;
+        // Free it on the loader thread, after the load if one is still in flight
+        last.thenAcceptAsync(loaded -> {
+            loaded.close();
+            Log.d(TAG, "Last interpreter closed, " + slot.name + " released");
+        }, loader);
+    }
+
+    // A failed load holds nothing; drop it so the next acquire tries again
+    private synchronized void abandon(Slot slot, CompletableFuture<InferenceBackend> failed) {
+        slot.users--;
+        if (slot.model == failed) slot.model = null;
+    }
+
+    private static Exception unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+    public synchronized int getUserCount() {
+        return primary.users;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return secondary.model == null && secondary.users == 0 ? primary.toString() : primary + ", " + secondary;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.aurasense.utils;
+
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scores one band's feature windows with the primary model and, when "Model 2" is on, a
+ * secondary model alongside it. Both read the same standardized feature vector, so each
+ * window is summarized once.
+ *
+ * The secondary runs concurrently on its own executor and never holds up the primary: the
+ * primary's label is returned as soon as it is ready. Each model has a latency budget; a
+ * secondary result that arrives after its budget (counted from when the window was handed
+ * over) is dropped, and a window that comes while the secondary is still busy with the last
+ * one is skipped for it. Per-model latency and how often the two models give the same raw
+ * label for a window are kept for the metrics log.
+ */
+public class MultiModelRunner {
+
+    public static final long DEFAULT_PRIMARY_BUDGET_MS = 50L;
+    public static final long DEFAULT_SECONDARY_BUDGET_MS = 100L;
+
+    private static final String TAG = "MultiModelRunner";
+    private static final int PENDING = -2;
+    private static final int DROPPED = -3;
+
+    /** One model's counters; each is written only by the thread that runs that model. */
+    private static final class ModelStats {
+        final String name;
+        final long budgetNanos;
+        volatile String kind = "-";
+        volatile long runs;
+        volatile long failures;
+        volatile long overBudget;
+        volatile long skipped;
+        volatile long totalNanos;
+        volatile long maxNanos;
+
+        ModelStats(String name, long budgetMs) {
+            this.name = name;
+            this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        }
+
+        /** Returns whether the run made its budget. */
+        boolean record(long nanos, int label) {
+            if (label < 0) {
+                failures++;
+                return false;
+            }
+            runs++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+            if (nanos <= budgetNanos) return true;
+            overBudget++;
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            long n = runs;
+            return String.format(Locale.US, "%s %s runs=%d avg=%.1fms max=%.1fms over=%d failed=%d skipped=%d budget=%dms",
+                    name, kind, n, n == 0 ? 0f : totalNanos / 1e6f / n, maxNanos / 1e6f, overBudget, failures,
+                    skipped, TimeUnit.NANOSECONDS.toMillis(budgetNanos));
+        }
+    }
+
+    // Both raw labels for one window, compared by whichever model finishes second
+    private static final class Window {
+        int primaryLabel = PENDING;
+        int secondaryLabel = PENDING;
+    }
+
+    private final TFLiteEmotionInterpreter primary;
+    private final Executor secondaryExecutor;
+    private volatile TFLiteEmotionInterpreter secondary;
+    private final AtomicBoolean secondaryBusy = new AtomicBoolean();
+
+    private final ModelStats primaryStats;
+    private final ModelStats secondaryStats;
+    // Guarded by this
+    private long compared;
+    private long agreed;
+
+    /**
+     * @param secondaryExecutor where the secondary model runs; not the caller's thread. Shut it
+     *                          down before closing the secondary interpreter.
+     */
+    public MultiModelRunner(TFLiteEmotionInterpreter primary, Executor secondaryExecutor,
+                            long primaryBudgetMs, long secondaryBudgetMs) {
+        this.primary = primary;
+        this.secondaryExecutor = secondaryExecutor;
+        this.primaryStats = new ModelStats("model", primaryBudgetMs);
+        this.secondaryStats = new ModelStats("model 2", secondaryBudgetMs);
+        primaryStats.kind = primary.getModelKind().name();
+    }
+
+    /**
+     * Runs the secondary model next to the primary from the next window on, or stops it if
+     * {@code interpreter} is null. The interpreter must not be used elsewhere meanwhile.
+     */
+    public void setSecondary(TFLiteEmotionInterpreter interpreter) {
+        if (interpreter != null) secondaryStats.kind = interpreter.getModelKind().name();
+        secondary = interpreter;
+    }
+
+    public boolean hasSecondary() {
+        return secondary != null;
+    }
+
+    /**
+     * One window: hands it to the secondary model if one is set and idle, scores it with the
+     * primary on the calling thread and returns the primary's smoothed label (-1 on failure).
+     * Single caller thread.
+     */
+    public int predict(float[] scaledFeatures) {
+        Window window = null;
+        TFLiteEmotionInterpreter second = secondary;
+        if (second != null) {
+            if (secondaryBusy.compareAndSet(false, true)) {
+                window = new Window();
+                Window w = window;
+                long submitted = System.nanoTime();
+                try {
+                    secondaryExecutor.execute(() -> runSecondary(second, scaledFeatures, w, submitted));
+                } catch (RejectedExecutionException e) {
+                    secondaryBusy.set(false); // shut down meanwhile
+                    window = null;
+                }
+            } else {
+                secondaryStats.skipped++;
+            }
+        }
+
+        long start = System.nanoTime();
+        int label = primary.classify(scaledFeatures);
+        primaryStats.record(System.nanoTime() - start, label);
+        if (window != null) settle(window, label, true);
+        return label < 0 ? -1 : primary.smooth(label);
+    }
+
+    // Secondary executor. The features are never written after publication, so both models can read them.
+    private void runSecondary(TFLiteEmotionInterpreter second, float[] scaledFeatures, Window window, long submitted) {
+        try {
+            int label = second.classify(scaledFeatures);
+            boolean inBudget = secondaryStats.record(System.nanoTime() - submitted, label);
+            if (label >= 0 && !inBudget) {
+                Log.d(TAG, "Model 2 missed its budget, result dropped");
+                label = DROPPED;
+            }
+            settle(window, label, false);
+            if (label >= 0) second.smooth(label);
+        } finally {
+            secondaryBusy.set(false);
+        }
+    }
+
+    private synchronized void settle(Window window, int label, boolean fromPrimary) {
+        if (fromPrimary) {
+            window.primaryLabel = label;
+        } else {
+            window.secondaryLabel = label;
+        }
+        if (window.primaryLabel == PENDING || window.secondaryLabel == PENDING) return;
+        // Failed or late results don't count either way
+        if (window.primaryLabel < 0 || window.secondaryLabel < 0) return;
+        compared++;
+        if (window.primaryLabel == window.secondaryLabel) agreed++;
+    }
+
+    /**
+     * Fraction of windows both models scored in budget on which they gave the same raw label;
+     * NaN if none. Raw rather than smoothed, so each comparison is about that one window.
+     */
+    public synchronized float getAgreement() {
+        return compared == 0 ? Float.NaN : (float) agreed / compared;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(primaryStats.toString());
+        if (secondary != null || secondaryStats.runs > 0 || secondaryStats.failures > 0) {
+            long n;
+            float agreement;
+            synchronized (this) {
+                n = compared;
+                agreement = getAgreement();
+            }
+            sb.append("\n  ").append(secondaryStats)
+                    .append(String.format(Locale.US, " agree=%.1f%% of %d", n == 0 ? 0f : agreement * 100f, n));
+        }
+        return sb.toString();
+    }
+}
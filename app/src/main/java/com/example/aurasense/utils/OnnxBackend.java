@@ -0,0 +1,264 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxMap;
+import ai.onnxruntime.OnnxSequence;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.SequenceInfo;
+import ai.onnxruntime.TensorInfo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.example.aurasense.utils.TFLiteEmotionInterpreter.NUM_FEATURES;
+import static com.example.aurasense.utils.TFLiteEmotionInterpreter.NUM_LABELS;
+
+/**
+ * The stress model on ONNX Runtime: the session plus the input and output names resolved from
+ * it. {@code OrtSession.run} is safe to call concurrently, so every runner shares the session
+ * and only owns its input tensor.
+ */
+final class OnnxBackend implements InferenceBackend {
+    private static final String TAG = "OnnxBackend";
+    static final String MODEL_ASSET = "stress_model.onnx";
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final boolean batchDimFixed;
+    private final Set<String> requestedOutputs;
+    private final OutputHead outputHead;
+    private final String labelOutput;       // int64 tensor, or null
+    private final String probabilityOutput; // float tensor or ZipMap sequence, or null
+
+    /** How the chosen model output turns into a class index. */
+    private interface OutputHead {
+        int decode(OnnxTensor output) throws OrtException;
+    }
+
+    OnnxBackend(Context context) throws Exception {
+        ModelAsset asset = ModelAsset.open(context, MODEL_ASSET);
+        env = OrtEnvironment.getEnvironment();
+        // Tuned options for this device (benchmarked once), from the pre-optimized graph
+        session = OrtSessionTuner.openSession(context, env, asset, NUM_FEATURES);
+
+        inputName = resolveInput(session);
+        batchDimFixed = isBatchDimFixed(session, inputName);
+
+        String labels = null, probabilities = null;
+        boolean tensorProbabilities = false;
+        for (Map.Entry<String, NodeInfo> e : session.getOutputInfo().entrySet()) {
+            Object info = e.getValue().getInfo();
+            if (info instanceof SequenceInfo) { // skl2onnx ZipMap probabilities
+                if (probabilities == null) probabilities = e.getKey();
+            } else if (info instanceof TensorInfo) {
+                OnnxJavaType type = ((TensorInfo) info).type;
+                if (type == OnnxJavaType.INT64 && labels == null) {
+                    labels = e.getKey();
+                } else if (type == OnnxJavaType.FLOAT && (probabilities == null || !tensorProbabilities)) {
+                    probabilities = e.getKey();
+                    tensorProbabilities = true;
+                }
+            }
+        }
+        labelOutput = labels;
+        probabilityOutput = probabilities;
+
+        // Live head: prefer the label tensor; fall back to argmax over a float probability tensor
+        String outputName = null;
+        OutputHead head = null;
+        if (labels != null) {
+            outputName = labels;
+            head = output -> (int) output.getLongBuffer().get(0);
+        } else if (tensorProbabilities) {
+            outputName = probabilities;
+            head = output -> {
+                FloatBuffer p = output.getFloatBuffer();
+                return argmax(p, 0, p.limit());
+            };
+        }
+        if (head == null) {
+            String outputs = String.valueOf(session.getOutputNames());
+            close();
+            throw new IllegalStateException("ONNX model has no label or probability tensor output: " + outputs);
+        }
+        requestedOutputs = Collections.singleton(outputName);
+        outputHead = head;
+        Log.d(TAG, "ONNX model loaded. input=" + inputName + " output=" + outputName);
+    }
+
+    private static boolean isBatchDimFixed(OrtSession session, String inputName) throws OrtException {
+        NodeInfo node = session.getInputInfo().get(inputName);
+        if (node == null || !(node.getInfo() instanceof TensorInfo)) return false;
+        long[] shape = ((TensorInfo) node.getInfo()).getShape();
+        return shape.length > 0 && shape[0] > 0;
+    }
+
+    private static String resolveInput(OrtSession session) throws OrtException {
+        Map.Entry<String, NodeInfo> first = session.getInputInfo().entrySet().iterator().next();
+        if (first.getValue().getInfo() instanceof TensorInfo) {
+            TensorInfo info = (TensorInfo) first.getValue().getInfo();
+            long[] shape = info.getShape();
+            if (info.type != OnnxJavaType.FLOAT || shape.length != 2 || (shape[1] > 0 && shape[1] != NUM_FEATURES)) {
+                Log.w(TAG, "Unexpected model input " + first.getKey() + ": " + info);
+            }
+        }
+        return first.getKey();
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.ONNX;
+    }
+
+    // The input tensor wraps a direct buffer that each prediction overwrites in place
+    private final class OnnxRunner implements Runner {
+        private final FloatBuffer inputBuffer = ByteBuffer.allocateDirect(NUM_FEATURES * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        private final OnnxTensor inputTensor;
+        private final Map<String, OnnxTensor> inputs;
+
+        OnnxRunner() throws OrtException {
+            inputTensor = OnnxTensor.createTensor(env, inputBuffer, new long[]{1, NUM_FEATURES});
+            inputs = Collections.singletonMap(inputName, inputTensor);
+        }
+
+        @Override
+        public int run(float[] scaledFeatures) throws OrtException {
+            for (int i = 0; i < NUM_FEATURES; i++) {
+                inputBuffer.put(i, scaledFeatures[i]);
+            }
+            try (OrtSession.Result result = session.run(inputs, requestedOutputs)) {
+                return outputHead.decode((OnnxTensor) result.get(0));
+            }
+        }
+
+        @Override
+        public void close() {
+            inputTensor.close();
+        }
+    }
+
+    @Override
+    public Runner newRunner() throws OrtException {
+        return new OnnxRunner();
+    }
+
+    @Override
+    public void warmUp() throws OrtException {
+        OnnxRunner runner = new OnnxRunner();
+        try {
+            runner.run(new float[NUM_FEATURES]);
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Override
+    public TFLiteEmotionInterpreter.BatchResult predictBatch(float[] scaledFeatures, int count) throws OrtException {
+        if (count == 0) return new TFLiteEmotionInterpreter.BatchResult(0, new int[0], null, NUM_LABELS);
+        if (batchDimFixed) {
+            // Exported with a fixed batch of 1: same result, one run per row
+            int[] labels = new int[count];
+            float[] probabilities = null;
+            int numClasses = NUM_LABELS;
+            for (int r = 0; r < count; r++) {
+                float[] row = new float[NUM_FEATURES];
+                System.arraycopy(scaledFeatures, r * NUM_FEATURES, row, 0, NUM_FEATURES);
+                TFLiteEmotionInterpreter.BatchResult one = runBatch(row, 1);
+                labels[r] = one.labels[0];
+                if (one.probabilities != null) {
+                    if (probabilities == null) {
+                        numClasses = one.numClasses;
+                        probabilities = new float[count * numClasses];
+                    }
+                    System.arraycopy(one.probabilities, 0, probabilities, r * numClasses, numClasses);
+                }
+            }
+            return new TFLiteEmotionInterpreter.BatchResult(count, labels, probabilities, numClasses);
+        }
+        return runBatch(scaledFeatures, count);
+    }
+
+    private TFLiteEmotionInterpreter.BatchResult runBatch(float[] scaledFeatures, int count) throws OrtException {
+        Set<String> wanted = new HashSet<>();
+        if (labelOutput != null) wanted.add(labelOutput);
+        if (probabilityOutput != null) wanted.add(probabilityOutput);
+
+        FloatBuffer data = FloatBuffer.wrap(scaledFeatures, 0, count * NUM_FEATURES);
+        try (OnnxTensor input = OnnxTensor.createTensor(env, data, new long[]{count, NUM_FEATURES});
+             OrtSession.Result result = session.run(Collections.singletonMap(inputName, input), wanted)) {
+
+            float[] probabilities = null;
+            int numClasses = NUM_LABELS;
+            if (probabilityOutput != null) {
+                OnnxValue value = result.get(probabilityOutput).orElse(null);
+                if (value instanceof OnnxTensor) {
+                    FloatBuffer p = ((OnnxTensor) value).getFloatBuffer();
+                    numClasses = p.limit() / count;
+                    probabilities = new float[count * numClasses];
+                    p.get(probabilities);
+                } else if (value instanceof OnnxSequence) {
+                    List<?> rows = ((OnnxSequence) value).getValue();
+                    probabilities = new float[count * numClasses];
+                    for (int r = 0; r < rows.size() && r < count; r++) {
+                        Object el = rows.get(r);
+                        Map<?, ?> row = el instanceof OnnxMap ? ((OnnxMap) el).getValue() : (Map<?, ?>) el;
+                        for (Map.Entry<?, ?> c : row.entrySet()) {
+                            int label = ((Number) c.getKey()).intValue();
+                            if (label >= 0 && label < numClasses) {
+                                probabilities[r * numClasses + label] = ((Number) c.getValue()).floatValue();
+                            }
+                        }
+                    }
+                }
+            }
+
+            int[] labels = new int[count];
+            OnnxValue labelValue = labelOutput != null ? result.get(labelOutput).orElse(null) : null;
+            if (labelValue instanceof OnnxTensor) {
+                LongBuffer l = ((OnnxTensor) labelValue).getLongBuffer();
+                for (int r = 0; r < count; r++) labels[r] = (int) l.get(r);
+            } else if (probabilities != null) {
+                for (int r = 0; r < count; r++) labels[r] = TFLiteEmotionInterpreter.argmax(probabilities, r * numClasses, numClasses);
+            } else {
+                throw new IllegalStateException("Model produced neither labels nor probabilities");
+            }
+            return new TFLiteEmotionInterpreter.BatchResult(count, labels, probabilities, numClasses);
+        }
+    }
+
+    private static int argmax(FloatBuffer a, int off, int len) {
+        int idx = 0;
+        float max = a.get(off);
+        for (int i = 1; i < len; i++) {
+            if (a.get(off + i) > max) { max = a.get(off + i); idx = i; }
+        }
+        return idx;
+    }
+
+    // The environment is process-wide and stays
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            Log.e(TAG, "Failed to close ONNX session", e);
+        }
+    }
+}
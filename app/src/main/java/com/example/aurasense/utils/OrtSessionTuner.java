@@ -0,0 +1,236 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtProvider;
+import ai.onnxruntime.OrtSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Picks ONNX Runtime session options for this device. The first time a model is seen, a short
+ * micro-benchmark times each viable configuration (thread counts, CPU arena, NNAPI/XNNPACK
+ * where the runtime has them) and the fastest is kept in preferences, keyed by the model's
+ * content hash. The optimized graph is saved once under that hash and the chosen provider, so
+ * later sessions load the pre-optimized graph and skip most graph optimization; the bundled
+ * model itself is only read when there is something to (re)build.
+ */
+public final class OrtSessionTuner {
+
+    public enum Provider { CPU, XNNPACK, NNAPI }
+
+    /** One candidate session configuration. */
+    public static final class Config {
+        public final Provider provider;
+        public final int intraOpThreads;
+        public final boolean cpuArena;
+
+        public Config(Provider provider, int intraOpThreads, boolean cpuArena) {
+            this.provider = provider;
+            this.intraOpThreads = intraOpThreads;
+            this.cpuArena = cpuArena;
+        }
+
+        String encode() {
+            return provider.name() + "," + intraOpThreads + "," + (cpuArena ? 1 : 0);
+        }
+
+        static Config decode(String s) {
+            try {
+                String[] p = s.split(",");
+                return new Config(Provider.valueOf(p[0]), Integer.parseInt(p[1]), "1".equals(p[2]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s threads=%d arena=%b", provider, intraOpThreads, cpuArena);
+        }
+    }
+
+    public static final Config DEFAULT = new Config(Provider.CPU, 1, true);
+
+    private static final String TAG = "OrtSessionTuner";
+    private static final String PREFS = "AuraModel";
+    private static final String KEY_CONFIG = "session_config";
+    private static final String KEY_MODEL_STAMP = "session_config_model";
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int TIMED_RUNS = 50;
+
+    private OrtSessionTuner() { }
+
+    /**
+     * Session for {@code model} with this device's tuned options, benchmarking first if this
+     * model (by content hash) has not been tuned yet.
+     */
+    static OrtSession openSession(Context context, OrtEnvironment env, ModelAsset model,
+                                  int numFeatures) throws OrtException, IOException {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        Config config = model.hash.equals(prefs.getString(KEY_MODEL_STAMP, null))
+                ? Config.decode(prefs.getString(KEY_CONFIG, "")) : null;
+        if (config == null) {
+            config = benchmark(env, model.bytes(), numFeatures);
+            prefs.edit().putString(KEY_CONFIG, config.encode()).putString(KEY_MODEL_STAMP, model.hash).apply();
+        }
+
+        File optimized = optimizedFileFor(context, model, config);
+        if (!optimized.exists()) {
+            deleteStaleCaches(context, model, optimized);
+            saveOptimized(env, model.bytes(), optimized, cachedLevel(config));
+        }
+        if (optimized.exists()) {
+            try {
+                OrtSession.SessionOptions options = options(config);
+                // A CPU graph is fully optimized; any other provider still runs its own
+                // EXTENDED passes on the BASIC graph
+                if (config.provider == Provider.CPU) {
+                    options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.NO_OPT);
+                }
+                return env.createSession(optimized.getAbsolutePath(), options);
+            } catch (OrtException e) {
+                Log.w(TAG, "Pre-optimized model unusable, loading the original", e);
+                optimized.delete();
+            }
+        }
+        return env.createSession(model.bytes(), options(config));
+    }
+
+    /**
+     * How far the saved graph is optimized. EXTENDED fusions are assigned to an execution
+     * provider, so a graph optimized that far on CPU is only valid for CPU sessions; for other
+     * providers only the provider-independent BASIC passes are saved.
+     */
+    static OrtSession.SessionOptions.OptLevel cachedLevel(Config config) {
+        return config.provider == Provider.CPU
+                ? OrtSession.SessionOptions.OptLevel.EXTENDED_OPT
+                : OrtSession.SessionOptions.OptLevel.BASIC_OPT;
+    }
+
+    // Built on plain CPU: a graph with NNAPI/XNNPACK-compiled nodes cannot be serialized
+    private static void saveOptimized(OrtEnvironment env, byte[] model, File optimized,
+                                      OrtSession.SessionOptions.OptLevel level) {
+        try (OrtSession.SessionOptions options = options(DEFAULT)) {
+            options.setOptimizationLevel(level);
+            options.setOptimizedModelFilePath(optimized.getAbsolutePath());
+            env.createSession(model, options).close();
+            Log.d(TAG, "Saved optimized graph to " + optimized.getName());
+        } catch (OrtException e) {
+            Log.w(TAG, "Could not save optimized graph", e);
+            optimized.delete();
+        }
+    }
+
+    // Keyed by provider too: the graph saved for one provider is not valid for another
+    static File optimizedFileFor(Context context, ModelAsset model, Config config) {
+        return new File(context.getFilesDir(), model.baseName() + "." + model.hash + "."
+                + config.provider.name().toLowerCase(Locale.US) + ".opt.onnx");
+    }
+
+    // Graphs optimized from earlier versions of the model or for another provider, and the
+    // plain copies older builds made
+    private static void deleteStaleCaches(Context context, ModelAsset model, File keep) {
+        File[] files = context.getFilesDir().listFiles();
+        if (files == null) return;
+        String current = keep.getName();
+        for (File f : files) {
+            String name = f.getName();
+            boolean stale = name.equals(model.name)
+                    || (name.startsWith(model.baseName() + ".") && name.endsWith(".opt.onnx") && !name.equals(current));
+            if (stale && f.delete()) Log.d(TAG, "Dropped stale model cache " + name);
+        }
+    }
+
+    /**
+     * Session options for a configuration, optimizing up to EXTENDED. Those passes depend on
+     * the provider; see {@link #cachedLevel} for what is saved.
+     */
+    public static OrtSession.SessionOptions options(Config config) throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.EXTENDED_OPT);
+        options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+        options.setIntraOpNumThreads(config.intraOpThreads);
+        options.setInterOpNumThreads(1);
+        options.setCPUArenaAllocator(config.cpuArena);
+        switch (config.provider) {
+            case XNNPACK:
+                options.addXnnpack(Collections.singletonMap("intra_op_num_threads",
+                        String.valueOf(config.intraOpThreads)));
+                break;
+            case NNAPI:
+                options.addNnapi();
+                break;
+            default:
+                break;
+        }
+        return options;
+    }
+
+    static List<Config> candidates() {
+        EnumSet<OrtProvider> available = OrtEnvironment.getAvailableProviders();
+        int cores = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        List<Config> list = new ArrayList<>();
+        list.add(DEFAULT);
+        list.add(new Config(Provider.CPU, 1, false));
+        if (cores > 1) list.add(new Config(Provider.CPU, cores, true));
+        if (available.contains(OrtProvider.XNNPACK)) list.add(new Config(Provider.XNNPACK, 1, true));
+        if (available.contains(OrtProvider.NNAPI)) list.add(new Config(Provider.NNAPI, 1, true));
+        return list;
+    }
+
+    /** Times every viable candidate on a single-window input; returns the fastest by median. */
+    public static Config benchmark(OrtEnvironment env, byte[] model, int numFeatures) {
+        Config best = DEFAULT;
+        long bestNanos = Long.MAX_VALUE;
+        for (Config config : candidates()) {
+            long nanos;
+            try {
+                nanos = medianRunNanos(env, model, config, numFeatures);
+            } catch (OrtException | RuntimeException e) {
+                Log.w(TAG, "Config not viable: " + config + " (" + e.getMessage() + ")");
+                continue;
+            }
+            Log.d(TAG, String.format(Locale.US, "%s: %.3f ms/run", config, nanos / 1e6));
+            if (nanos < bestNanos) {
+                bestNanos = nanos;
+                best = config;
+            }
+        }
+        Log.d(TAG, "Selected " + best);
+        return best;
+    }
+
+    private static long medianRunNanos(OrtEnvironment env, byte[] model, Config config, int numFeatures)
+            throws OrtException {
+        try (OrtSession.SessionOptions options = options(config);
+             OrtSession session = env.createSession(model, options);
+             OnnxTensor input = OnnxTensor.createTensor(env, FloatBuffer.wrap(new float[numFeatures]),
+                     new long[]{1, numFeatures})) {
+            String inputName = session.getInputNames().iterator().next();
+            long[] times = new long[TIMED_RUNS];
+            for (int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+                long start = System.nanoTime();
+                try (OrtSession.Result ignored = session.run(Collections.singletonMap(inputName, input))) {
+                    if (i >= WARMUP_RUNS) times[i - WARMUP_RUNS] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(times);
+            return times[TIMED_RUNS / 2];
+        }
+    }
+}
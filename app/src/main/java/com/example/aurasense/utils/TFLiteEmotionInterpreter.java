@@ -1,47 +1,44 @@
 package com.example.aurasense.utils;
 
-import android.content.Context;
 import android.util.Log;
 
-import ai.onnxruntime.OnnxTensor;
-import ai.onnxruntime.OnnxValue;
-import ai.onnxruntime.OrtEnvironment;
-import ai.onnxruntime.OrtException;
-import ai.onnxruntime.OrtSession;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.FloatBuffer;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Set;
-
+/**
+ * One consumer's view of the emotion model: its own smoothing and input buffers over the
+ * {@link InferenceBackend} shared through {@link ModelRegistry}. The caller keeps the 30s
+ * window (see {@link InferenceExecutor}); the static helpers below turn one into features.
+ * Obtain one from {@link ModelRegistry#acquire} and {@link #close()} it when done; the
+ * model's native memory is released once the last interpreter is closed.
+ */
 public class TFLiteEmotionInterpreter {
     private static final String TAG = "TFLiteEmotionInterpreter";
     private static final boolean ENABLE_DEBUG_LOGS = true;
 
     // ---- Sampling & windowing (match training) ----
-    // One sensor packet about every ~2s -> 15 packets ≈ 30s window
-    private static final float SAMPLE_PERIOD_SEC = 2.0f;
+    // The window is 30s of sample time, whatever the band's rate: ~15 packets from the
+    // legacy 2s stream, ~960 samples from a 32 Hz batched stream.
     private static final int   WINDOW_SECONDS    = 30;
-    private static final int   WINDOW_SIZE       = Math.max(1, Math.round(WINDOW_SECONDS / SAMPLE_PERIOD_SEC));
+    public static final long   WINDOW_MS         = WINDOW_SECONDS * 1000L;
+    private static final int   MIN_WINDOW_SAMPLES = 15;
+    // A window counts as full once it spans this much (one legacy packet short of 30s)
+    private static final long  WINDOW_READY_MS   = WINDOW_MS - 2500L;
 
     // ---- Sensor pre-map to WESAD-ish units (same as before) ----
     private static final float ACC_SCALE  = 10f;   // ESP32 g -> Empatica-like range
     private static final float TEMP_SHIFT = 1.8f;  // bring skin T toward WESAD mean
     private static final float BVP_SCALE  = 100f;  // amplitude scale to match train distro (kept)
 
-    // Rolling window of raw-but-rescaled samples: [accX, accY, accZ, temp, bvp_rawScaled]
-    private final Queue<float[]> window = new LinkedList<>();
+    // Window channels, raw-but-rescaled: [accX, accY, accZ, temp, bvp_rawScaled]
+    public static final int CHANNELS = 5;
+    // One 30s window at the band's native 32 Hz, with headroom; grows if a band sends faster
+    private static final int WINDOW_CAPACITY = 1024;
 
-    // ONNX runtime
-    private final OrtEnvironment env;
-    private final OrtSession session;
+    // Shared backend; this consumer's runner owns the input buffers each prediction overwrites
+    public static final int NUM_FEATURES = 10;
+    private final InferenceBackend backend;
+    private final InferenceBackend.Runner runner;
+    private final ModelRegistry registry;
+    private final ModelRegistry.Slot slot;
+    private boolean closed;
 
     // === Train-only scaler (from models/feature_scaler_train.pkl) ===
     // Order: [acc_x_mean, acc_y_mean, acc_z_mean, temp_mean, bvp_mean,
@@ -55,178 +52,154 @@ public class TFLiteEmotionInterpreter {
             7.00220728,  9.34066677,  9.21833134,  0.01729131, 41.47352600
     };
 
-    // Smoothing of discrete predictions
+    // Smoothing of discrete predictions: majority over the last few labels, kept in a ring
     private static final int SMOOTH_WINDOW = 5;
-    private final Queue<Integer> predictionHistory = new LinkedList<>();
+    public static final int NUM_LABELS = 3;
+    private final int[] recentLabels = new int[SMOOTH_WINDOW];
+    private final int[] labelCounts = new int[NUM_LABELS];
+    private int recentCount = 0;
+    private int recentNext = 0;
     private int lastStableLabel = 0;
-
-    public TFLiteEmotionInterpreter(Context context) throws Exception {
-        copyModelFromAssetsIfNeeded(context);
-        File modelFile = new File(context.getFilesDir(), "stress_model.onnx");
-        env = OrtEnvironment.getEnvironment();
-        session = env.createSession(modelFile.getAbsolutePath(), new OrtSession.SessionOptions());
+    // Dumping the scaled features allocates; keep it off outside of model debugging
+    private static final boolean LOG_FEATURES = false;
+
+    TFLiteEmotionInterpreter(InferenceBackend backend, ModelRegistry registry, ModelRegistry.Slot slot) throws Exception {
+        this.backend = backend;
+        this.registry = registry;
+        this.slot = slot;
+        this.runner = backend.newRunner();
         if (ENABLE_DEBUG_LOGS) {
-            Log.d(TAG, "ONNX model loaded. WINDOW_SIZE=" + WINDOW_SIZE);
-        }
-    }
-
-    private void copyModelFromAssetsIfNeeded(Context context) {
-        File modelFile = new File(context.getFilesDir(), "stress_model.onnx");
-        if (!modelFile.exists()) {
-            try (InputStream is = context.getAssets().open("stress_model.onnx");
-                 OutputStream os = new FileOutputStream(modelFile)) {
-                byte[] buffer = new byte[4096];
-                int length;
-                while ((length = is.read(buffer)) > 0) os.write(buffer, 0, length);
-                if (ENABLE_DEBUG_LOGS) Log.d(TAG, "Copied stress_model.onnx to internal storage.");
-            } catch (IOException e) {
-                Log.e(TAG, "Failed to copy ONNX model from assets", e);
-            }
-        } else if (ENABLE_DEBUG_LOGS) {
-            Log.d(TAG, "ONNX model already present in internal storage.");
+            Log.d(TAG, "Interpreter attached to shared " + backend.kind() + " model. WINDOW_SECONDS=" + WINDOW_SECONDS);
         }
     }
 
     /**
-     * Feed one raw sample; returns smoothed label.
+     * Runs the model on one standardized feature vector (see {@link #scaledFeatures}) and
+     * returns its raw label for that window, or -1 on failure. Smoothing is not touched; fold
+     * the label in with {@link #smooth} if it should count.
      * Label map (WESAD wrist): 0 = Baseline, 1 = Amusement, 2 = Stress
      */
-    public int predictFromRawSensors(float accX, float accY, float accZ, float temp, float bvp) {
-        // ---- 1) Map raw ESP32 units to training-like ranges (no centering here) ----
-        final float accX_scaled = accX * ACC_SCALE;
-        final float accY_scaled = accY * ACC_SCALE;
-        final float accZ_scaled = accZ * ACC_SCALE;
-        final float temp_scaled = temp + TEMP_SHIFT;
-
-        // Keep BVP in a raw scaled form (no EMA offset) → center per-window below
-        final float bvp_rawScaled = bvp * BVP_SCALE;
-
-        // Update window
-        window.add(new float[]{ accX_scaled, accY_scaled, accZ_scaled, temp_scaled, bvp_rawScaled });
-        if (window.size() < WINDOW_SIZE) return lastStableLabel;
-        if (window.size() > WINDOW_SIZE) window.poll();
-
-        // ---- 2) Compute 10 features in training order, with PER-WINDOW BVP centering ----
-        // First pass: sums for means on raw-scaled values
-        final int W = window.size();
-        float[] sum = new float[5];
-        for (float[] s : window) {
-            sum[0] += s[0]; sum[1] += s[1]; sum[2] += s[2]; sum[3] += s[3]; sum[4] += s[4];
-        }
-        float accX_mean = sum[0] / W;
-        float accY_mean = sum[1] / W;
-        float accZ_mean = sum[2] / W;
-        float temp_mean = sum[3] / W;
-        float bvp_mean_raw = sum[4] / W; // mean of raw-scaled BVP in this window
-
-        // Second pass: population std. For BVP, use (bvp - bvp_mean_raw) to zero center per window.
-        float accX_var = 0f, accY_var = 0f, accZ_var = 0f, temp_var = 0f, bvp_var = 0f;
-        for (float[] s : window) {
-            float dx = s[0] - accX_mean; accX_var += dx*dx;
-            float dy = s[1] - accY_mean; accY_var += dy*dy;
-            float dz = s[2] - accZ_mean; accZ_var += dz*dz;
-            float dt = s[3] - temp_mean; temp_var += dt*dt;
-            float db = (s[4] - bvp_mean_raw); bvp_var += db*db;
-        }
-        float accX_std = (float)Math.sqrt(accX_var / W);
-        float accY_std = (float)Math.sqrt(accY_var / W);
-        float accZ_std = (float)Math.sqrt(accZ_var / W);
-        float temp_std = (float)Math.sqrt(temp_var / W);
-        float bvp_std  = (float)Math.sqrt(bvp_var  / W);
-
-        // Assemble features in EXACT order. Note: we inject a centered BVP mean (~0).
-        float[] features = new float[] {
-                accX_mean, accY_mean, accZ_mean, temp_mean, 0f /* centered BVP mean */,
-                accX_std,  accY_std,  accZ_std,  temp_std,  bvp_std
-        };
-
-        // ---- 3) Standardize with train-only scaler ----
-        float[] inputScaled = new float[10];
-        for (int i = 0; i < 10; i++) {
-            inputScaled[i] = (float)((features[i] - MEANS[i]) / STDS[i]);
-        }
-        if (ENABLE_DEBUG_LOGS) {
+    public int classify(float[] scaledFeatures) {
+        if (LOG_FEATURES) {
             StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < inputScaled.length; i++) {
-                sb.append(inputScaled[i]);
-                if (i < inputScaled.length - 1) sb.append(", ");
+            for (int i = 0; i < NUM_FEATURES; i++) {
+                sb.append(scaledFeatures[i]);
+                if (i < NUM_FEATURES - 1) sb.append(", ");
             }
             Log.d(TAG, "Scaled features: [" + sb + "]");
         }
 
-        // ---- 4) ONNX inference (robust to different export heads) ----
+        // Inference on the shared backend
+        int predicted;
         try {
-            String inputName = firstInputName(session.getInputNames());
-            try (OnnxTensor input = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputScaled), new long[]{1, 10});
-                 OrtSession.Result result = session.run(Collections.singletonMap(inputName, input))) {
-
-                Integer predicted = readLabelFromResult(result);
-                if (predicted == null) {
-                    Log.e(TAG, "Unexpected ONNX outputs; cannot infer label.");
-                    return -1;
-                }
-
-                // ---- 5) Temporal smoothing ----
-                predictionHistory.add(predicted);
-                if (predictionHistory.size() > SMOOTH_WINDOW) predictionHistory.poll();
-
-                int[] counts = new int[3];
-                for (int lab : predictionHistory) counts[lab]++;
-                lastStableLabel = argmax(counts);
-
-                if (ENABLE_DEBUG_LOGS) {
-                    Log.d(TAG, "Predicted=" + predicted + " Stable=" + lastStableLabel);
-                }
-                return lastStableLabel;
-            }
-        } catch (OrtException e) {
-            Log.e(TAG, "ONNX inference failed", e);
+            predicted = runner.run(scaledFeatures);
+        } catch (Exception e) {
+            Log.e(TAG, backend.kind() + " inference failed", e);
             return -1;
         }
+        if (predicted < 0 || predicted >= NUM_LABELS) {
+            Log.e(TAG, "Unexpected " + backend.kind() + " label " + predicted);
+            return -1;
+        }
+        return predicted;
     }
 
-    // -------- Helpers --------
+    /**
+     * Folds one raw label from {@link #classify} into the majority over the last few and
+     * returns the smoothed label.
+     */
+    public int smooth(int predicted) {
+        if (recentCount == SMOOTH_WINDOW) {
+            labelCounts[recentLabels[recentNext]]--;
+        } else {
+            recentCount++;
+        }
+        recentLabels[recentNext] = predicted;
+        recentNext = (recentNext + 1) % SMOOTH_WINDOW;
+        labelCounts[predicted]++;
+        lastStableLabel = argmax(labelCounts);
 
-    private static String firstInputName(Set<String> names) {
-        Iterator<String> it = names.iterator();
-        return it.hasNext() ? it.next() : "input";
+        if (ENABLE_DEBUG_LOGS) {
+            Log.d(TAG, "Predicted=" + predicted + " Stable=" + lastStableLabel);
+        }
+        return lastStableLabel;
     }
 
-    /** Accept either a direct label (long[]) or probabilities (float[] / float[][]). */
-    private static Integer readLabelFromResult(OrtSession.Result result) throws OrtException {
-        Integer lab = tryReadLabelFromIndex(result, 0);
-        if (lab != null) return lab;
-        return tryReadLabelFromIndex(result, 1);
-    }
+    // -------- Stateless batch scoring --------
+
+    /** Labels and class probabilities for a batch of windows, row i for window i. */
+    public static final class BatchResult {
+        public final int count;
+        public final int[] labels;
+        /** Row-major [count * numClasses], or null if the model exposes no probabilities. */
+        public final float[] probabilities;
+        public final int numClasses;
+
+        BatchResult(int count, int[] labels, float[] probabilities, int numClasses) {
+            this.count = count;
+            this.labels = labels;
+            this.probabilities = probabilities;
+            this.numClasses = numClasses;
+        }
 
-    private static Integer tryReadLabelFromIndex(OrtSession.Result result, int idx) throws OrtException {
-        OnnxValue val;
-        try {
-            val = result.get(idx);
-        } catch (IndexOutOfBoundsException ex) {
-            return null;
+        public float probability(int row, int label) {
+            return probabilities != null ? probabilities[row * numClasses + label] : Float.NaN;
         }
-        if (!(val instanceof OnnxTensor)) return null;
-
-        Object raw = ((OnnxTensor) val).getValue();
-        if (raw instanceof long[]) {
-            long[] labs = (long[]) raw;
-            return labs.length > 0 ? (int) labs[0] : null;
-        } else if (raw instanceof float[][]) {
-            float[] probs = ((float[][]) raw)[0];
-            return argmax(probs);
-        } else if (raw instanceof float[]) {
-            float[] probs = (float[]) raw;
-            return argmax(probs);
+    }
+
+    /**
+     * Scores {@code count} standardized feature vectors (row-major, {@link #NUM_FEATURES} each,
+     * e.g. from {@link #scaledFeatures}) in one backend run on an [N,10] tensor. Raw
+     * model labels, no smoothing; the smoothing state is not touched, so this is safe to call
+     * from any thread alongside {@link #classify}.
+     */
+    public BatchResult predictBatch(float[] scaledFeatures, int count) throws Exception {
+        return backend.predictBatch(scaledFeatures, count);
+    }
+
+    // -------- Feature extraction (shared by the live and batch paths) --------
+
+    /** One window of model-space samples, sized for 30s at the band's native rate. */
+    public static FeatureWindow newFeatureWindow() {
+        return new FeatureWindow(CHANNELS, WINDOW_CAPACITY);
+    }
+
+    /** Maps one raw band sample to the window's channels: [accX, accY, accZ, temp, bvp_rawScaled]. */
+    public static void toModelChannels(float accX, float accY, float accZ, float temp, float bvp, float[] out) {
+        out[0] = accX * ACC_SCALE;
+        out[1] = accY * ACC_SCALE;
+        out[2] = accZ * ACC_SCALE;
+        out[3] = temp + TEMP_SHIFT;
+        // Keep BVP in a raw scaled form (no EMA offset); it is centered per window
+        out[4] = bvp * BVP_SCALE;
+    }
+
+    /** Enough samples spanning ~30s for the model to be meaningful. */
+    public static boolean isWindowReady(FeatureWindow window) {
+        return window.size() >= MIN_WINDOW_SAMPLES && window.spanMs() >= WINDOW_READY_MS;
+    }
+
+    /**
+     * Writes the window's 10 features in training order, standardized with the train-only
+     * scaler, to {@code out[off..off+10)}. Means and population stds come straight from the
+     * running window statistics; centering BVP on its window mean leaves its std unchanged
+     * and its mean at 0.
+     */
+    public static void scaledFeatures(FeatureWindow window, float[] out, int off) {
+        for (int c = 0; c < CHANNELS; c++) {
+            float mean = c == 4 ? 0f /* centered BVP mean */ : window.mean(c);
+            out[off + c] = (float) ((mean - MEANS[c]) / STDS[c]);
+            out[off + CHANNELS + c] = (float) ((window.std(c) - MEANS[CHANNELS + c]) / STDS[CHANNELS + c]);
         }
-        return null;
     }
 
-    private static int argmax(float[] a) {
+    // -------- Helpers --------
+
+    static int argmax(float[] a, int off, int len) {
         int idx = 0;
-        float max = a[0];
-        for (int i = 1; i < a.length; i++) {
-            if (a[i] > max) { max = a[i]; idx = i; }
+        float max = a[off];
+        for (int i = 1; i < len; i++) {
+            if (a[off + i] > max) { max = a[off + i]; idx = i; }
         }
         return idx;
     }
@@ -242,12 +215,15 @@ public class TFLiteEmotionInterpreter {
 
     public int getLastStableLabel() { return lastStableLabel; }
 
+    public InferenceBackend.Kind getModelKind() { return backend.kind(); }
+
+    /** Detaches from the shared model; the last interpreter to close frees it. Idempotent. */
     public void close() {
-        try {
-            if (session != null) session.close();
-            if (env != null) env.close();
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to close ONNX session", e);
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
         }
+        runner.close();
+        registry.release(slot);
     }
 }
@@ -0,0 +1,117 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.example.aurasense.utils.TFLiteEmotionInterpreter.NUM_FEATURES;
+
+/**
+ * The stress model on TensorFlow Lite, loaded straight from the mapped asset. Expects one
+ * float [N,10] input and a float [N,classes] probability output; labels are its argmax. A
+ * TFLite interpreter is not thread-safe, so runs are serialized on the backend and runners
+ * only own their input and output arrays.
+ */
+final class TfliteBackend implements InferenceBackend {
+    private static final String TAG = "TfliteBackend";
+    static final String MODEL_ASSET = "stress_model.tflite";
+
+    private final ModelAsset asset; // the interpreter reads the mapping for its whole life
+    private final Interpreter interpreter;
+    private final int probabilityOutput;
+    private final int numClasses;
+    private int batchRows = -1; // guarded by this
+
+    TfliteBackend(Context context) throws IOException {
+        asset = ModelAsset.open(context, MODEL_ASSET);
+        Interpreter.Options options = new Interpreter.Options().setNumThreads(1).setUseXNNPACK(true);
+        interpreter = new Interpreter(asset.buffer(), options);
+
+        int output = -1;
+        for (int i = 0; i < interpreter.getOutputTensorCount(); i++) {
+            Tensor t = interpreter.getOutputTensor(i);
+            if (t.dataType() == DataType.FLOAT32 && t.shape().length == 2) {
+                output = i;
+                break;
+            }
+        }
+        if (output < 0) {
+            interpreter.close();
+            throw new IllegalStateException("TFLite model has no [N,classes] float output");
+        }
+        probabilityOutput = output;
+        numClasses = interpreter.getOutputTensor(output).shape()[1];
+        Log.d(TAG, "TFLite model loaded. output=" + output + " classes=" + numClasses);
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.TFLITE;
+    }
+
+    private synchronized void run(float[][] input, float[][] probabilities) {
+        if (input.length != batchRows) {
+            interpreter.resizeInput(0, new int[]{input.length, NUM_FEATURES});
+            interpreter.allocateTensors();
+            batchRows = input.length;
+        }
+        Map<Integer, Object> outputs = Collections.singletonMap(probabilityOutput, probabilities);
+        interpreter.runForMultipleInputsOutputs(new Object[]{input}, outputs);
+    }
+
+    private final class TfliteRunner implements Runner {
+        private final float[][] input = new float[1][NUM_FEATURES];
+        private final float[][] probabilities = new float[1][numClasses];
+
+        @Override
+        public int run(float[] scaledFeatures) {
+            System.arraycopy(scaledFeatures, 0, input[0], 0, NUM_FEATURES);
+            TfliteBackend.this.run(input, probabilities);
+            return TFLiteEmotionInterpreter.argmax(probabilities[0], 0, numClasses);
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    @Override
+    public Runner newRunner() {
+        return new TfliteRunner();
+    }
+
+    @Override
+    public void warmUp() {
+        new TfliteRunner().run(new float[NUM_FEATURES]);
+    }
+
+    @Override
+    public TFLiteEmotionInterpreter.BatchResult predictBatch(float[] scaledFeatures, int count) {
+        if (count == 0) return new TFLiteEmotionInterpreter.BatchResult(0, new int[0], null, numClasses);
+        float[][] input = new float[count][NUM_FEATURES];
+        for (int r = 0; r < count; r++) {
+            System.arraycopy(scaledFeatures, r * NUM_FEATURES, input[r], 0, NUM_FEATURES);
+        }
+        float[][] out = new float[count][numClasses];
+        run(input, out);
+
+        int[] labels = new int[count];
+        float[] probabilities = new float[count * numClasses];
+        for (int r = 0; r < count; r++) {
+            System.arraycopy(out[r], 0, probabilities, r * numClasses, numClasses);
+            labels[r] = TFLiteEmotionInterpreter.argmax(out[r], 0, numClasses);
+        }
+        return new TFLiteEmotionInterpreter.BatchResult(count, labels, probabilities, numClasses);
+    }
+
+    @Override
+    public synchronized void close() {
+        interpreter.close();
+    }
+}
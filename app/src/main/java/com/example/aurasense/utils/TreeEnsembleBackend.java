@@ -0,0 +1,146 @@
+package com.example.aurasense.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.example.aurasense.utils.TFLiteEmotionInterpreter.NUM_FEATURES;
+
+/**
+ * The stress model's random forest evaluated in plain Java, from the asset written by
+ * {@code extras/AI1_EmotionModel/utils/export_forest.py}. No native session and no JNI hop:
+ * a prediction is one walk down each tree over primitive arrays. Labels match the ONNX
+ * model's because the arithmetic does: float32 thresholds tested as {@code x <= t}, leaf
+ * weights summed in float32 in tree order, first maximum wins.
+ *
+ * Immutable once loaded, so runners (which only own a score buffer) can run concurrently.
+ */
+final class TreeEnsembleBackend implements InferenceBackend {
+    private static final String TAG = "TreeEnsembleBackend";
+    static final String MODEL_ASSET = "stress_model.forest";
+
+    private static final int MAGIC = 0x524F4641; // "AFOR", little-endian
+    private static final int VERSION = 1;
+
+    private final int numClasses;
+    private final int[] roots;          // first node of each tree
+    // All trees' nodes back to back; child and leaf indices are absolute
+    private final short[] feature;      // -1 for a leaf
+    private final float[] threshold;
+    private final int[] left;           // for a leaf: its row in leafWeights
+    private final int[] right;
+    private final float[] leafWeights;  // [leaf * numClasses + class], pre-divided by the tree count
+
+    TreeEnsembleBackend(Context context) throws IOException {
+        this(ModelAsset.open(context, MODEL_ASSET).buffer());
+    }
+
+    TreeEnsembleBackend(ByteBuffer model) throws IOException {
+        ByteBuffer in = model.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        in.rewind();
+        if (in.getInt() != MAGIC) throw new IOException("Not a forest asset");
+        int version = in.getShort() & 0xFFFF;
+        if (version != VERSION) throw new IOException("Unsupported forest version " + version);
+        int features = in.getShort() & 0xFFFF;
+        if (features != NUM_FEATURES) throw new IOException("Forest expects " + features + " features");
+        numClasses = in.getShort() & 0xFFFF;
+        int trees = in.getInt();
+
+        // First pass for the totals, so every array is allocated exactly once
+        int totalNodes = 0, totalLeaves = 0;
+        int start = in.position();
+        for (int t = 0; t < trees; t++) {
+            int nodes = in.getInt();
+            int leaves = in.getInt();
+            totalNodes += nodes;
+            totalLeaves += leaves;
+            in.position(in.position() + nodes * (2 + 4 + 4 + 4) + leaves * numClasses * 4);
+        }
+        in.position(start);
+
+        roots = new int[trees];
+        feature = new short[totalNodes];
+        threshold = new float[totalNodes];
+        left = new int[totalNodes];
+        right = new int[totalNodes];
+        leafWeights = new float[totalLeaves * numClasses];
+        int nodeBase = 0, leafBase = 0;
+        for (int t = 0; t < trees; t++) {
+            int nodes = in.getInt();
+            int leaves = in.getInt();
+            roots[t] = nodeBase;
+            for (int n = 0; n < nodes; n++) feature[nodeBase + n] = in.getShort();
+            for (int n = 0; n < nodes; n++) threshold[nodeBase + n] = in.getFloat();
+            for (int n = 0; n < nodes; n++) {
+                int l = in.getInt();
+                left[nodeBase + n] = feature[nodeBase + n] < 0 ? leafBase + l : nodeBase + l;
+            }
+            for (int n = 0; n < nodes; n++) {
+                int r = in.getInt();
+                right[nodeBase + n] = feature[nodeBase + n] < 0 ? -1 : nodeBase + r;
+            }
+            for (int k = 0; k < leaves * numClasses; k++) leafWeights[leafBase * numClasses + k] = in.getFloat();
+            nodeBase += nodes;
+            leafBase += leaves;
+        }
+        Log.d(TAG, "Forest loaded: " + trees + " trees, " + totalNodes + " nodes, " + numClasses + " classes");
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.JAVA;
+    }
+
+    /** Sums every tree's leaf for row {@code x[off..off+10)} into {@code scores}; returns the argmax. */
+    private int score(float[] x, int off, float[] scores, int scoresOff) {
+        Arrays.fill(scores, scoresOff, scoresOff + numClasses, 0f);
+        for (int root : roots) {
+            int n = root;
+            while (feature[n] >= 0) {
+                n = x[off + feature[n]] <= threshold[n] ? left[n] : right[n];
+            }
+            int w = left[n] * numClasses;
+            for (int c = 0; c < numClasses; c++) scores[scoresOff + c] += leafWeights[w + c];
+        }
+        return TFLiteEmotionInterpreter.argmax(scores, scoresOff, numClasses);
+    }
+
+    private final class ForestRunner implements Runner {
+        private final float[] scores = new float[numClasses];
+
+        @Override
+        public int run(float[] scaledFeatures) {
+            return score(scaledFeatures, 0, scores, 0);
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    @Override
+    public Runner newRunner() {
+        return new ForestRunner();
+    }
+
+    @Override
+    public void warmUp() {
+        new ForestRunner().run(new float[NUM_FEATURES]);
+    }
+
+    @Override
+    public TFLiteEmotionInterpreter.BatchResult predictBatch(float[] scaledFeatures, int count) {
+        int[] labels = new int[count];
+        float[] probabilities = new float[count * numClasses];
+        for (int r = 0; r < count; r++) {
+            labels[r] = score(scaledFeatures, r * NUM_FEATURES, probabilities, r * numClasses);
+        }
+        return new TFLiteEmotionInterpreter.BatchResult(count, labels, probabilities, numClasses);
+    }
+
+    @Override
+    public void close() { }
+}
@@ -0,0 +1,111 @@
+package com.example.aurasense.ble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Feeds a simulated 32 Hz band in batched (v2) mode through the decoder and a
+ * {@link BandPipeline}, and checks every row comes out with its values and spacing intact.
+ */
+public class BatchedFrameDecoderTest {
+
+    private static final int ROWS_PER_FRAME = 8;
+    private static final long RECEIVED_AT_MS = 1_700_000_000_000L;
+
+    @Test
+    public void decodesEveryRowOfABatchedFrame() {
+        SampleBatch sent = SimulatedBand.nativeRateSamples(ROWS_PER_FRAME);
+        byte[] frame = SimulatedBand.encodeV2(42, sent, 0, ROWS_PER_FRAME);
+
+        SampleBatch got = new SampleBatch(4); // forces the columns to grow mid-frame
+        assertTrue(FrameDecoder.decodeBinary(frame, 0, frame.length, got, RECEIVED_AT_MS));
+        assertEquals(ROWS_PER_FRAME, got.size());
+
+        long lastSent = sent.timestampMs[ROWS_PER_FRAME - 1];
+        for (int i = 0; i < ROWS_PER_FRAME; i++) {
+            assertEquals(42, got.seq[i]);
+            assertEquals(RECEIVED_AT_MS - (lastSent - sent.timestampMs[i]), got.timestampMs[i]);
+            assertEquals(sent.bpm[i], got.bpm[i], 0.05f);
+            assertEquals(sent.hrv[i], got.hrv[i], 0.05f);
+            assertEquals(sent.temp[i], got.temp[i], 0.005f);
+            assertEquals(sent.accX[i], got.accX[i], 0.005f);
+            assertEquals(sent.accY[i], got.accY[i], 0.005f);
+            assertEquals(sent.accZ[i], got.accZ[i], 0.005f);
+            assertEquals(sent.bvp[i], got.bvp[i], 0.0005f);
+            assertTrue(got.isWorn(i));
+        }
+    }
+
+    @Test
+    public void corruptBatchAppendsNothing() {
+        SampleBatch sent = SimulatedBand.nativeRateSamples(ROWS_PER_FRAME);
+        byte[] frame = SimulatedBand.encodeV2(1, sent, 0, ROWS_PER_FRAME);
+        frame[FrameProtocol.HEADER_SIZE + FrameProtocol.V2_HEADER_SIZE + 5] ^= 0x10;
+
+        SampleBatch got = new SampleBatch();
+        assertFalse(FrameDecoder.decodeBinary(frame, 0, frame.length, got, RECEIVED_AT_MS));
+        assertTrue(got.isEmpty());
+    }
+
+    @Test
+    public void pipelineDeliversOneBatchPerNotification() throws Exception {
+        int seconds = 10;
+        SampleBatch sent = SimulatedBand.nativeRateSamples(seconds * FrameProtocol.V2_SAMPLE_RATE_HZ);
+        List<byte[]> notifications = SimulatedBand.batchedNotifications(sent, ROWS_PER_FRAME);
+
+        List<Float> accX = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(notifications.size());
+        BandPipeline pipeline = new BandPipeline("AA:BB:CC:DD:EE:01", (address, batch) -> {
+            calls.incrementAndGet();
+            for (int i = 0; i < batch.size(); i++) accX.add(batch.accX[i]);
+            done.countDown();
+        });
+        for (byte[] notification : notifications) pipeline.submit(notification);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown();
+
+        assertEquals(notifications.size(), calls.get());
+        assertEquals(sent.size(), accX.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(sent.accX[i], accX.get(i), 0.005f);
+        }
+        assertEquals(0, pipeline.getUndecodableCount());
+    }
+
+    @Test
+    public void pipelineFlagsLostFramesAndDropsDuplicatesAcrossWrap() throws Exception {
+        SampleBatch sent = SimulatedBand.nativeRateSamples(ROWS_PER_FRAME);
+        int[] seqs = {65534, 65535, 1, 1, 2}; // frame 0 lost, frame 1 repeated
+
+        List<Boolean> gaps = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        BandPipeline pipeline = new BandPipeline("AA:BB:CC:DD:EE:02", (address, batch) -> {
+            gaps.add(batch.isAfterGap(0));
+            done.countDown();
+        });
+        for (int seq : seqs) pipeline.submit(SimulatedBand.encodeV2(seq, sent, 0, ROWS_PER_FRAME));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pipeline.shutdown();
+
+        // First frame of a link has unknown continuity, so it counts as a gap too
+        assertEquals(Arrays.asList(true, false, true, false), gaps);
+        SequenceTracker sequence = pipeline.getSequence();
+        assertEquals(4, sequence.getReceivedCount());
+        assertEquals(1, sequence.getLostCount());
+        assertEquals(1, sequence.getDuplicateCount());
+        assertEquals(0.2f, sequence.getLossRate(), 1e-6f);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.aurasense.ble;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * After a corrupt frame on a binary link the assembler must resync to the next SYNC, not to a
+ * '{' that happens to sit in a binary payload.
+ */
+public class FrameAssemblerTest {
+
+    private long binary, json;
+    private final FrameAssembler assembler = new FrameAssembler((buf, off, len, isBinary) -> {
+        if (isBinary) binary++; else json++;
+    });
+
+    private static byte[] frame(int seq) {
+        // 12.3 bpm scales to 123 = 0x7B, a '{' in the payload
+        return SimulatedBand.encodeV1(seq, 12.3f, 40f, 33f, 0f, 0f, 1f, 0.01f, true);
+    }
+
+    @Test
+    public void braceInCorruptBinaryPayloadIsNotJson() {
+        assembler.feed(frame(1));
+        assertEquals(1, binary);
+
+        byte[] corrupt = frame(2);
+        corrupt[corrupt.length - 1] ^= 0x01;
+        assembler.feed(corrupt);
+        assembler.feed(frame(3));
+
+        // Delivered at once, not held back behind a JSON scan of the corrupt payload
+        assertEquals(2, binary);
+        assertEquals(0, json);
+        assertEquals(1, assembler.getCrcErrorCount());
+        assertEquals(0, assembler.getBufferedByteCount());
+    }
+
+    @Test
+    public void jsonStillFramedBeforeAnyBinaryFrame() {
+        assembler.feed("xx{\"bpm\":70}".getBytes());
+        assertEquals(1, json);
+        assembler.reset();
+        assembler.feed(frame(1));
+        assembler.reset(); // a new link may speak JSON again
+        assembler.feed("{\"bpm\":71}".getBytes());
+        assertEquals(2, json);
+        assertEquals(1, binary);
+    }
+}
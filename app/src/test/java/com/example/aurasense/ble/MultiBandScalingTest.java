@@ -0,0 +1,118 @@
+package com.example.aurasense.ble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs N simulated bands through their own {@link BandPipeline}s at once. Every band must get
+ * every frame with none shed, however many bands there are.
+ *
+ * Since bands share no parse state, adding bands should also not stretch any one band's
+ * notification-to-callback tail latency much beyond what a single band sees. That depends on
+ * the machine's cores and load, so it is only checked when benchmarks are asked for
+ * ({@code -PauraBenchmarks}, which sets {@value #BENCHMARKS_PROPERTY}).
+ */
+public class MultiBandScalingTest {
+
+    private static final String BENCHMARKS_PROPERTY = "aura.benchmarks";
+    private static final int[] BAND_COUNTS = {4, 16};
+    private static final int FRAMES_PER_BAND = 300;
+    private static final long FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // Tail allowed relative to one band; the baseline is floored so scheduler noise on a
+    // sub-millisecond single-band tail cannot fail the run
+    private static final long MAX_P99_RATIO = 4;
+    private static final long BASELINE_FLOOR_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    @Test
+    public void everyBandGetsEveryFrame() throws Exception {
+        run(1);
+        for (int n : BAND_COUNTS) run(n);
+    }
+
+    @Test
+    public void worstBandTailLatencyStaysNearSingleBand() throws Exception {
+        assumeTrue("timing benchmark; run with -PauraBenchmarks", Boolean.getBoolean(BENCHMARKS_PROPERTY));
+        long baseline = Math.max(BASELINE_FLOOR_NANOS, worstBandP99(run(1)));
+        for (int n : BAND_COUNTS) {
+            long worst = worstBandP99(run(n));
+            assertTrue("worst band p99 with " + n + " bands was " + worst / 1000 + "us, one band "
+                            + baseline / 1000 + "us",
+                    worst <= MAX_P99_RATIO * baseline);
+        }
+    }
+
+    private static long worstBandP99(long[][] latencies) {
+        long worst = 0;
+        for (long[] band : latencies) {
+            long[] sorted = band.clone();
+            Arrays.sort(sorted);
+            worst = Math.max(worst, percentile(sorted, 0.99));
+        }
+        return worst;
+    }
+
+    /** Checks every frame of every band arrived; @return latency in nanos per band per sequence number. */
+    private long[][] run(int bandCount) throws InterruptedException {
+        long[][] sentAt = new long[bandCount][FRAMES_PER_BAND];
+        long[][] latency = new long[bandCount][FRAMES_PER_BAND];
+        CountDownLatch done = new CountDownLatch(bandCount * FRAMES_PER_BAND);
+
+        List<BandPipeline> pipelines = new ArrayList<>();
+        for (int b = 0; b < bandCount; b++) {
+            final int band = b;
+            pipelines.add(new BandPipeline(address(b), (address, batch) -> {
+                long now = System.nanoTime();
+                for (int i = 0; i < batch.size(); i++) {
+                    latency[band][batch.seq[i]] = now - sentAt[band][batch.seq[i]];
+                    done.countDown();
+                }
+            }));
+        }
+
+        List<Thread> radios = new ArrayList<>();
+        for (int b = 0; b < bandCount; b++) {
+            final int band = b;
+            final BandPipeline pipeline = pipelines.get(b);
+            Thread radio = new Thread(() -> {
+                for (int seq = 0; seq < FRAMES_PER_BAND; seq++) {
+                    byte[] frame = SimulatedBand.encodeV1(seq, 70 + band, 40f, 33.5f,
+                            0.1f * band, -0.2f, 9.81f, 0.8f, true);
+                    sentAt[band][seq] = System.nanoTime();
+                    pipeline.submit(frame);
+                    LockSupport.parkNanos(FRAME_INTERVAL_NANOS);
+                }
+            }, "radio-" + b);
+            radios.add(radio);
+            radio.start();
+        }
+        for (Thread radio : radios) radio.join();
+
+        assertTrue("frames lost with " + bandCount + " bands", done.await(10, TimeUnit.SECONDS));
+        for (BandPipeline pipeline : pipelines) {
+            assertEquals(FRAMES_PER_BAND, pipeline.getFrameCount());
+            assertEquals(0, pipeline.getParseStage().getQueue().getDroppedCount());
+            pipeline.shutdown();
+        }
+        return latency;
+    }
+
+    private static String address(int band) {
+        return String.format(Locale.US, "AA:BB:CC:DD:EE:%02X", band);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[idx];
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.aurasense.ble;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test-side mirror of the firmware encoder in extras/sensors/final_demo_sensor_code.ino. */
+final class SimulatedBand {
+
+    private SimulatedBand() { }
+
+    static byte[] encodeV1(int seq, float bpm, float hrv, float temp,
+                           float accX, float accY, float accZ, float bvp, boolean finger) {
+        byte[] out = new byte[FrameProtocol.OVERHEAD + FrameProtocol.V1_PAYLOAD_SIZE];
+        out[0] = FrameProtocol.SYNC;
+        out[1] = FrameProtocol.VERSION_1;
+        putU16(out, 2, FrameProtocol.V1_PAYLOAD_SIZE);
+        putU16(out, 4, seq & 0xFFFF);
+
+        int p = FrameProtocol.HEADER_SIZE;
+        putU16(out, p + FrameProtocol.OFF_BPM, scaled(bpm, FrameProtocol.SCALE_BPM));
+        putU16(out, p + FrameProtocol.OFF_HRV, scaled(hrv, FrameProtocol.SCALE_HRV));
+        putU16(out, p + FrameProtocol.OFF_TEMP, scaled(temp, FrameProtocol.SCALE_TEMP));
+        putU16(out, p + FrameProtocol.OFF_ACC_X, scaled(accX, FrameProtocol.SCALE_ACC));
+        putU16(out, p + FrameProtocol.OFF_ACC_Y, scaled(accY, FrameProtocol.SCALE_ACC));
+        putU16(out, p + FrameProtocol.OFF_ACC_Z, scaled(accZ, FrameProtocol.SCALE_ACC));
+        putU16(out, p + FrameProtocol.OFF_BVP, scaled(bvp, FrameProtocol.SCALE_BVP));
+        out[p + FrameProtocol.OFF_FLAGS] = (byte) (finger ? FrameProtocol.FLAG_FINGER : 0);
+
+        int n = out.length - 1;
+        out[n] = (byte) FrameProtocol.crc8(out, 1, n - 1);
+        return out;
+    }
+
+    /** One batched (v2) frame holding rows [from, from + count) of {@code samples}. */
+    static byte[] encodeV2(int seq, SampleBatch samples, int from, int count) {
+        int payload = FrameProtocol.V2_HEADER_SIZE + count * FrameProtocol.V2_ROW_SIZE;
+        byte[] out = new byte[FrameProtocol.OVERHEAD + payload];
+        out[0] = FrameProtocol.SYNC;
+        out[1] = FrameProtocol.VERSION_2;
+        putU16(out, 2, payload);
+        putU16(out, 4, seq & 0xFFFF);
+        out[FrameProtocol.HEADER_SIZE + FrameProtocol.V2_OFF_COUNT] = (byte) count;
+
+        int r = FrameProtocol.HEADER_SIZE + FrameProtocol.V2_HEADER_SIZE;
+        for (int i = from; i < from + count; i++, r += FrameProtocol.V2_ROW_SIZE) {
+            putU16(out, r + FrameProtocol.V2_ROW_DT, (int) (samples.timestampMs[i] - samples.timestampMs[from]));
+            int p = r + FrameProtocol.V2_ROW_SAMPLE;
+            putU16(out, p + FrameProtocol.OFF_BPM, scaled(samples.bpm[i], FrameProtocol.SCALE_BPM));
+            putU16(out, p + FrameProtocol.OFF_HRV, scaled(samples.hrv[i], FrameProtocol.SCALE_HRV));
+            putU16(out, p + FrameProtocol.OFF_TEMP, scaled(samples.temp[i], FrameProtocol.SCALE_TEMP));
+            putU16(out, p + FrameProtocol.OFF_ACC_X, scaled(samples.accX[i], FrameProtocol.SCALE_ACC));
+            putU16(out, p + FrameProtocol.OFF_ACC_Y, scaled(samples.accY[i], FrameProtocol.SCALE_ACC));
+            putU16(out, p + FrameProtocol.OFF_ACC_Z, scaled(samples.accZ[i], FrameProtocol.SCALE_ACC));
+            putU16(out, p + FrameProtocol.OFF_BVP, scaled(samples.bvp[i], FrameProtocol.SCALE_BVP));
+            out[p + FrameProtocol.OFF_FLAGS] = samples.flags[i];
+        }
+
+        int n = out.length - 1;
+        out[n] = (byte) FrameProtocol.crc8(out, 1, n - 1);
+        return out;
+    }
+
+    /** Synthetic native-rate stream: {@code count} worn samples at 32 Hz with moving ACC and BVP. */
+    static SampleBatch nativeRateSamples(int count) {
+        SampleBatch samples = new SampleBatch(count);
+        for (int k = 0; k < count; k++) {
+            int i = samples.appendRow();
+            double t = k / (double) FrameProtocol.V2_SAMPLE_RATE_HZ;
+            samples.timestampMs[i] = Math.round(t * 1000);
+            samples.bpm[i] = 72f;
+            samples.hrv[i] = 41.5f;
+            samples.temp[i] = 33.25f;
+            samples.accX[i] = (float) Math.sin(2 * Math.PI * 1.5 * t);
+            samples.accY[i] = -0.5f;
+            samples.accZ[i] = 9.81f;
+            samples.bvp[i] = (float) (0.8 + 0.2 * Math.sin(2 * Math.PI * 1.2 * t));
+            samples.flags[i] = (byte) SampleBatch.FLAG_FINGER;
+        }
+        return samples;
+    }
+
+    /**
+     * What the radio delivers in batched mode: the firmware flushes every {@code rowsPerFrame}
+     * rows and each frame goes out as one notification.
+     */
+    static List<byte[]> batchedNotifications(SampleBatch samples, int rowsPerFrame) {
+        List<byte[]> notifications = new ArrayList<>();
+        int seq = 0;
+        for (int from = 0; from < samples.size(); from += rowsPerFrame) {
+            notifications.add(encodeV2(seq++, samples, from, Math.min(rowsPerFrame, samples.size() - from)));
+        }
+        return notifications;
+    }
+
+    /** Split a byte stream into notification-sized chunks, the way the radio would. */
+    static List<byte[]> fragment(byte[] stream, int chunk) {
+        List<byte[]> parts = new ArrayList<>();
+        for (int off = 0; off < stream.length; off += chunk) {
+            int len = Math.min(chunk, stream.length - off);
+            byte[] part = new byte[len];
+            System.arraycopy(stream, off, part, 0, len);
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static int scaled(float v, float scale) {
+        if (Float.isNaN(v)) return FrameProtocol.MISSING & 0xFFFF;
+        return Math.round(v * scale) & 0xFFFF;
+    }
+
+    private static void putU16(byte[] buf, int off, int v) {
+        buf[off] = (byte) (v & 0xFF);
+        buf[off + 1] = (byte) ((v >> 8) & 0xFF);
+    }
+}
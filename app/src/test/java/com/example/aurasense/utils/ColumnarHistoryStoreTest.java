@@ -0,0 +1,137 @@
+package com.example.aurasense.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The on-disk history must read back exactly what was appended, newest first, across
+ * segment boundaries and after the store is reopened (a new process).
+ */
+public class ColumnarHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static HistoryStorage.Entry row(long i) {
+        return new HistoryStorage.Entry(1_000_000L + i * 2000L, 60f + i % 40, 33f + (i % 10) / 10f,
+                40f, i * 0.01f, -i * 0.01f, 1f, 1.5f, (float) Math.sin(i), (int) (i % 3));
+    }
+
+    private static void assertRow(long i, HistoryStorage.Entry e) {
+        HistoryStorage.Entry expected = row(i);
+        assertEquals(expected.timestamp, e.timestamp);
+        assertEquals(expected.bpm, e.bpm, 0f);
+        assertEquals(expected.temp, e.temp, 0f);
+        assertEquals(expected.accX, e.accX, 0f);
+        assertEquals(expected.accY, e.accY, 0f);
+        assertEquals(expected.accMag, e.accMag, 0f);
+        assertEquals(expected.bvp, e.bvp, 0f);
+        assertEquals(expected.label, e.label);
+    }
+
+    @Test
+    public void rowsSurviveReopenAcrossSegments() throws Exception {
+        File dir = new File(tmp.getRoot(), "band");
+        int n = ColumnarHistoryStore.SEGMENT_ROWS + 100;
+        ColumnarHistoryStore store = ColumnarHistoryStore.open(dir);
+        for (int i = 0; i < n; i++) store.append(row(i));
+        assertEquals(n, store.size());
+
+        ColumnarHistoryStore reopened = ColumnarHistoryStore.open(dir);
+        assertEquals(n, reopened.size());
+        List<HistoryStorage.Entry> history = reopened.asList();
+        assertEquals(n, history.size());
+        assertRow(n - 1, history.get(0));
+        assertRow(n - 1 - ColumnarHistoryStore.SEGMENT_ROWS, history.get(ColumnarHistoryStore.SEGMENT_ROWS));
+        assertRow(0, history.get(n - 1));
+
+        HistoryCursor oldest = reopened.oldestFirst();
+        for (int i = 0; i < n; i++) {
+            assertTrue(oldest.next());
+            assertRow(i, oldest.entry());
+        }
+        assertFalse(oldest.next());
+
+        // Appends continue after the rows already on disk
+        reopened.append(row(n));
+        assertRow(n, reopened.asList().get(0));
+        assertEquals(n + 1, ColumnarHistoryStore.open(dir).size());
+    }
+
+    @Test
+    public void rangeAndLatestSearchAcrossSegments() throws Exception {
+        ColumnarHistoryStore store = ColumnarHistoryStore.open(tmp.newFolder());
+        int n = 2 * ColumnarHistoryStore.SEGMENT_ROWS + 500;
+        for (int i = 0; i < n; i++) store.append(row(i));
+
+        // Rows are 2 s apart; the window spans the first segment boundary, ends mid-stride
+        int lo = ColumnarHistoryStore.SEGMENT_ROWS - 37, hi = ColumnarHistoryStore.SEGMENT_ROWS + 1001;
+        HistoryCursor range = store.range(row(lo).timestamp - 1, row(hi).timestamp);
+        assertEquals(hi - lo, range.count());
+        for (int i = lo; i < hi; i++) {
+            assertTrue(range.next());
+            assertRow(i, range.entry());
+        }
+        assertFalse(range.next());
+
+        assertEquals(n, store.range(Long.MIN_VALUE, Long.MAX_VALUE).count());
+        assertEquals(1, store.range(row(n - 1).timestamp, Long.MAX_VALUE).count());
+        assertEquals(0, store.range(row(n - 1).timestamp + 1, Long.MAX_VALUE).count());
+        assertEquals(0, store.range(0, row(0).timestamp).count());
+        assertEquals(0, store.range(row(5).timestamp, row(5).timestamp).count());
+
+        HistoryCursor latest = store.latest(ColumnarHistoryStore.SEGMENT_ROWS + 600);
+        assertEquals(ColumnarHistoryStore.SEGMENT_ROWS + 600, latest.count());
+        for (int i = n - 1; i >= n - ColumnarHistoryStore.SEGMENT_ROWS - 600; i--) {
+            assertTrue(latest.next());
+            assertRow(i, latest.entry());
+        }
+        assertFalse(latest.next());
+        assertEquals(n, store.latest(Integer.MAX_VALUE).count());
+
+        // The index keeps up with rows appended after an earlier search
+        store.append(row(n));
+        assertEquals(1, store.range(row(n).timestamp, Long.MAX_VALUE).count());
+    }
+
+    @Test
+    public void viewIsFixedAtCreation() throws Exception {
+        ColumnarHistoryStore store = ColumnarHistoryStore.open(tmp.newFolder());
+        store.append(row(0));
+        List<HistoryStorage.Entry> view = store.asList();
+        store.append(row(1));
+        assertEquals(1, view.size());
+        assertRow(0, view.get(0));
+        assertEquals(2, store.asList().size());
+    }
+
+    @Test
+    public void gapsAndClear() throws Exception {
+        File dir = tmp.newFolder();
+        ColumnarHistoryStore store = ColumnarHistoryStore.open(dir);
+        store.append(row(0));
+        store.appendGap(new HistoryStorage.Gap(10, 20));
+        store.appendGap(new HistoryStorage.Gap(30, 40));
+
+        List<HistoryStorage.Gap> gaps = ColumnarHistoryStore.open(dir).getGaps();
+        assertEquals(2, gaps.size());
+        assertEquals(30, gaps.get(0).fromTimestamp);
+        assertEquals(20, gaps.get(1).toTimestamp);
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertTrue(store.getGaps().isEmpty());
+        ColumnarHistoryStore reopened = ColumnarHistoryStore.open(dir);
+        assertEquals(0, reopened.size());
+        reopened.append(row(5));
+        assertRow(5, reopened.asList().get(0));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.aurasense.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * A missing sensor read arrives as NaN; it must not poison the window's running statistics,
+ * which would otherwise stay NaN until the next resync.
+ */
+public class FeatureWindowTest {
+
+    @Test
+    public void nonFiniteChannelCarriesLastValueForward() {
+        FeatureWindow window = new FeatureWindow(2, 16);
+        float[] sample = new float[2];
+        for (int i = 0; i < 968; i++) {
+            sample[0] = i % 2 == 0 ? 1f : 3f;
+            sample[1] = i == 500 ? Float.NaN : 33f;
+            assertTrue(window.add(i, sample));
+        }
+        assertEquals(2f, window.mean(0), 1e-4f);
+        assertEquals(1f, window.std(0), 1e-4f);
+        assertEquals(33f, window.mean(1), 1e-4f);
+        assertEquals(0f, window.std(1), 1e-4f);
+
+        // Evicting the substituted sample leaves the sums finite too
+        window.evictUpTo(600);
+        assertEquals(33f, window.mean(1), 1e-4f);
+        assertEquals(2f, window.mean(0), 1e-2f);
+    }
+
+    @Test
+    public void nonFiniteWithNothingToCarryIsDropped() {
+        FeatureWindow window = new FeatureWindow(1, 4);
+        assertFalse(window.add(0, new float[]{Float.POSITIVE_INFINITY}));
+        assertEquals(0, window.size());
+        assertTrue(window.add(1, new float[]{5f}));
+        assertTrue(window.add(2, new float[]{Float.NaN}));
+        assertEquals(2, window.size());
+        assertEquals(5f, window.mean(0), 0f);
+
+        window.clear();
+        assertFalse(window.add(3, new float[]{Float.NaN}));
+    }
+}
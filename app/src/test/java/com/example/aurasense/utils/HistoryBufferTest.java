@@ -0,0 +1,194 @@
+package com.example.aurasense.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The in-memory history keeps exactly the newest rows up to its capacity, across chunk and
+ * wrap-around boundaries, and its cursors walk them without allocating, consistently while
+ * the writer keeps appending.
+ */
+public class HistoryBufferTest {
+
+    private static void append(HistoryBuffer buffer, long i) {
+        buffer.append(i, i, i + 0.5f, 0f, 0f, 0f, 1f, 1f, -i, (int) (i % 3));
+    }
+
+    @Test
+    public void keepsNewestRowsInBothDirections() {
+        int capacity = 2 * HistoryBuffer.CHUNK_ROWS + 10; // not a whole number of chunks
+        HistoryBuffer buffer = new HistoryBuffer(capacity);
+        long n = 5L * capacity + 7;
+        for (long i = 0; i < n; i++) append(buffer, i);
+        assertEquals(capacity, buffer.size());
+
+        HistoryBuffer.Cursor newest = buffer.newestFirst();
+        assertEquals(capacity, newest.count());
+        for (long i = n - 1; i >= n - capacity; i--) {
+            assertTrue(newest.next());
+            assertEquals(i, newest.timestamp());
+            assertEquals(i + 0.5f, newest.temp(), 0f);
+            assertEquals(-i, newest.bvp(), 0f);
+            assertEquals(i % 3, newest.label());
+        }
+        assertFalse(newest.next());
+
+        HistoryBuffer.Cursor oldest = buffer.oldestFirst();
+        assertTrue(oldest.next());
+        assertEquals(n - capacity, oldest.timestamp());
+        assertEquals(n - 1, buffer.asList().get(0).timestamp);
+        assertEquals(n - capacity, buffer.asList().get(capacity - 1).timestamp);
+    }
+
+    @Test
+    public void partialAndCleared() {
+        HistoryBuffer buffer = new HistoryBuffer(100);
+        for (long i = 0; i < 3; i++) append(buffer, i);
+        HistoryBuffer.Cursor c = buffer.oldestFirst();
+        assertEquals(3, c.count());
+        for (long i = 0; i < 3; i++) {
+            assertTrue(c.next());
+            assertEquals(i, c.timestamp());
+        }
+        assertFalse(c.next());
+
+        // A cursor keeps its snapshot, even across a clear
+        buffer.clear();
+        append(buffer, 7);
+        c.rewind();
+        assertEquals(3, c.count());
+        assertTrue(c.next());
+        assertEquals(0, c.timestamp());
+        HistoryBuffer.Cursor after = buffer.oldestFirst();
+        assertEquals(1, after.count());
+        assertTrue(after.next());
+        assertEquals(7, after.timestamp());
+        assertEquals(0, new HistoryBuffer(5).newestFirst().count());
+    }
+
+    @Test
+    public void rangeAndLatestFindRowsByTime() {
+        int capacity = 2 * HistoryBuffer.CHUNK_ROWS + 10;
+        HistoryBuffer buffer = new HistoryBuffer(capacity);
+        long n = 3L * capacity;
+        for (long i = 0; i < n; i++) append(buffer, i);
+        long first = n - capacity;
+
+        HistoryBuffer.Cursor range = buffer.range(first + 100, first + 1500);
+        assertEquals(1400, range.count());
+        for (long i = first + 100; i < first + 1500; i++) {
+            assertTrue(range.next());
+            assertEquals(i, range.timestamp());
+            assertEquals(-i, range.bvp(), 0f);
+        }
+        assertFalse(range.next());
+        range.rewind();
+        assertTrue(range.next());
+        assertEquals(first + 100, range.timestamp());
+
+        // Clipped to the rows still held, and empty outside them
+        assertEquals(10, buffer.range(0, first + 10).count());
+        assertEquals(capacity, buffer.range(Long.MIN_VALUE, Long.MAX_VALUE).count());
+        assertEquals(0, buffer.range(n, Long.MAX_VALUE).count());
+        assertEquals(0, buffer.range(first + 5, first + 5).count());
+
+        HistoryBuffer.Cursor latest = buffer.latest(3);
+        for (long i = n - 1; i >= n - 3; i--) {
+            assertTrue(latest.next());
+            assertEquals(i, latest.timestamp());
+        }
+        assertFalse(latest.next());
+        append(buffer, n);
+        latest.rewind();
+        assertTrue(latest.next());
+        assertEquals(n - 1, latest.timestamp()); // fixed rows
+        assertEquals(capacity, buffer.latest(Integer.MAX_VALUE).count());
+    }
+
+    @Test
+    public void projectionCopiesOnlyRequestedColumns() {
+        HistoryBuffer buffer = new HistoryBuffer(100);
+        for (long i = 0; i < 50; i++) append(buffer, i);
+        HistoryStorage.Columns cols = HistoryStorage.project(buffer.range(10, 20),
+                HistoryCursor.COL_TEMP, HistoryCursor.COL_LABEL);
+        assertEquals(10, cols.count);
+        for (int k = 0; k < 10; k++) {
+            assertEquals(10 + k, cols.timestamps[k]);
+            assertEquals(10 + k + 0.5f, cols.get(HistoryCursor.COL_TEMP)[k], 0f);
+            assertEquals((10 + k) % 3, cols.label(k));
+        }
+        try {
+            cols.get(HistoryCursor.COL_BPM);
+            fail("bpm was not projected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void walkingAllocatesNothing() {
+        HistoryBuffer buffer = new HistoryBuffer(8 * HistoryBuffer.CHUNK_ROWS);
+        for (long i = 0; i < 20_000; i++) append(buffer, i);
+        HistoryBuffer.Cursor c = buffer.newestFirst();
+        double sum = 0;
+        for (int warm = 0; warm < 20; warm++) {
+            c.rewind();
+            while (c.next()) sum += c.bpm();
+        }
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(thread);
+        c.rewind();
+        while (c.next()) sum += c.bpm() + c.timestamp();
+        long allocated = mx.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated + " bytes (sum " + sum + ")", allocated < 1024);
+    }
+
+    @Test
+    public void readersSeeWholeSnapshotsWhileWriterAppends() throws Exception {
+        int capacity = 3 * HistoryBuffer.CHUNK_ROWS + 100;
+        HistoryBuffer buffer = new HistoryBuffer(capacity);
+        long rows = 400_000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            boolean newestFirst = r % 2 == 0;
+            readers[r] = new Thread(() -> {
+                while (!done.get() && failure.get() == null) {
+                    HistoryBuffer.Cursor c = newestFirst ? buffer.newestFirst() : buffer.oldestFirst();
+                    long expected = -1;
+                    int seen = 0;
+                    while (c.next()) {
+                        long t = c.timestamp();
+                        // Every column of a row was written together, and rows are consecutive
+                        if (c.bpm() != t || c.bvp() != -t || c.label() != t % 3
+                                || (expected >= 0 && t != expected)) {
+                            failure.set("row " + t + " after " + expected + ": bpm=" + c.bpm() + " label=" + c.label());
+                            return;
+                        }
+                        expected = newestFirst ? t - 1 : t + 1;
+                        seen++;
+                    }
+                    if (seen != c.count()) failure.set("walked " + seen + " of " + c.count());
+                }
+            });
+            readers[r].start();
+        }
+        for (long i = 0; i < rows; i++) append(buffer, i);
+        done.set(true);
+        for (Thread t : readers) t.join();
+
+        assertEquals(null, failure.get());
+        assertEquals(capacity, buffer.size());
+    }
+}
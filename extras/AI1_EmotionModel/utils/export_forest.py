@@ -0,0 +1,133 @@
+# export_forest.py
+"""
+Export the trained Random Forest as `stress_model.forest`, a compact binary asset for the
+app's pure-Java evaluator (com.example.aurasense.utils.TreeEnsembleBackend).
+
+Parity with the ONNX model (skl2onnx TreeEnsembleClassifier) is by construction:
+- thresholds are stored as float32 and tested as `x <= threshold`, like ONNX BRANCH_LEQ;
+- each leaf stores its class distribution divided by the number of trees, as float32;
+- the app sums leaf weights tree by tree in float32 and takes the first maximum.
+The export is checked rather than trusted: after writing, the asset is evaluated like the app
+does and must give the ONNX model's label on every one of PARITY_ROWS random standardized rows
+(plus extremes), or the script fails and removes the file.
+
+Layout (little-endian):
+    header   b"AFOR", u16 version, u16 n_features, u16 n_classes, u32 n_trees
+    per tree u32 n_nodes, u32 n_leaves,
+             i16 feature[n_nodes]     (-1 for a leaf)
+             f32 threshold[n_nodes]
+             i32 left[n_nodes]        (tree-local node index; for a leaf, its leaf index)
+             i32 right[n_nodes]
+             f32 leaf_weight[n_leaves * n_classes]
+
+Usage:
+    python utils/export_forest.py models/rf_model.pkl models/stress_model.onnx models/stress_model.forest
+
+Copy the checked asset next to stress_model.onnx in app/src/main/assets; the build stores
+.forest files uncompressed so the app can memory-map it.
+"""
+import os
+import pickle
+import struct
+import sys
+
+import numpy as np
+
+MAGIC = b"AFOR"
+VERSION = 1
+PARITY_ROWS = 5000
+
+
+def export_forest(rf, path):
+    trees = rf.estimators_
+    n_classes = int(rf.n_classes_)
+    n_features = int(rf.n_features_in_)
+    # The app maps argmax index -> label directly
+    assert list(rf.classes_) == list(range(n_classes)), f"classes must be 0..n-1, got {rf.classes_}"
+
+    with open(path, "wb") as f:
+        f.write(MAGIC)
+        f.write(struct.pack("<HHHI", VERSION, n_features, n_classes, len(trees)))
+        for est in trees:
+            t = est.tree_
+            is_leaf = t.children_left == -1
+            n_nodes = t.node_count
+            n_leaves = int(is_leaf.sum())
+
+            leaf_index = np.full(n_nodes, -1, dtype=np.int64)
+            leaf_index[is_leaf] = np.arange(n_leaves)
+
+            feature = np.where(is_leaf, -1, t.feature).astype("<i2")
+            threshold = np.where(is_leaf, 0.0, t.threshold).astype("<f4")
+            left = np.where(is_leaf, leaf_index, t.children_left).astype("<i4")
+            right = np.where(is_leaf, -1, t.children_right).astype("<i4")
+
+            values = t.value[is_leaf, 0, :].astype(np.float64)
+            values /= values.sum(axis=1, keepdims=True)
+            weights = (values / len(trees)).astype("<f4")
+
+            f.write(struct.pack("<II", n_nodes, n_leaves))
+            for arr in (feature, threshold, left, right, weights):
+                f.write(arr.tobytes())
+
+
+def predict_like_app(path, X):
+    """Reference evaluator mirroring the Java one (float32 throughout); for checking exports."""
+    with open(path, "rb") as f:
+        data = f.read()
+    assert data[:4] == MAGIC
+    _, n_features, n_classes, n_trees = struct.unpack_from("<HHHI", data, 4)
+    off = 14
+    X = np.asarray(X, dtype=np.float32)
+    scores = np.zeros((len(X), n_classes), dtype=np.float32)
+    for _ in range(n_trees):
+        n_nodes, n_leaves = struct.unpack_from("<II", data, off)
+        off += 8
+        feature = np.frombuffer(data, "<i2", n_nodes, off); off += 2 * n_nodes
+        threshold = np.frombuffer(data, "<f4", n_nodes, off); off += 4 * n_nodes
+        left = np.frombuffer(data, "<i4", n_nodes, off); off += 4 * n_nodes
+        right = np.frombuffer(data, "<i4", n_nodes, off); off += 4 * n_nodes
+        weights = np.frombuffer(data, "<f4", n_leaves * n_classes, off).reshape(n_leaves, n_classes)
+        off += 4 * n_leaves * n_classes
+        for i, x in enumerate(X):
+            n = 0
+            while feature[n] >= 0:
+                n = left[n] if x[feature[n]] <= threshold[n] else right[n]
+            scores[i] += weights[left[n]]
+    return scores.argmax(axis=1)
+
+
+def random_rows(rng, count, n_features):
+    """Mostly standard normal like real windows, 5% extremes; as TreeEnsembleParityTest."""
+    rows = rng.standard_normal((count, n_features))
+    extreme = rng.random((count, n_features)) < 0.05
+    rows[extreme] *= 50
+    return rows.astype(np.float32)
+
+
+def check_parity(forest_path, onnx_path, rows=PARITY_ROWS, seed=42):
+    """Fraction of rows on which the exported forest and the ONNX model agree; must be 1.0."""
+    import onnxruntime as ort
+
+    session = ort.InferenceSession(onnx_path, providers=["CPUExecutionProvider"])
+    with open(forest_path, "rb") as f:
+        _, n_features, _, _ = struct.unpack_from("<HHHI", f.read(14), 4)
+    X = random_rows(np.random.default_rng(seed), rows, n_features)
+    expected = np.asarray(session.run(None, {session.get_inputs()[0].name: X})[0]).astype(np.int64)
+    actual = predict_like_app(forest_path, X)
+    return float((expected.reshape(-1) == actual).mean())
+
+
+if __name__ == "__main__":
+    if len(sys.argv) != 4:
+        sys.exit("usage: export_forest.py <rf_model.pkl> <stress_model.onnx> <stress_model.forest>")
+    model_path, onnx_path, forest_path = sys.argv[1:]
+    with open(model_path, "rb") as f:
+        model = pickle.load(f)
+    export_forest(model, forest_path)
+    agreement = check_parity(forest_path, onnx_path)
+    if agreement != 1.0:
+        os.remove(forest_path)
+        sys.exit(f"forest disagrees with {onnx_path} on {(1 - agreement) * PARITY_ROWS:.0f} "
+                 f"of {PARITY_ROWS} rows; not exported")
+    print(f"Exported forest -> {forest_path} (agrees with ONNX on {PARITY_ROWS} rows)")
@@ -22,13 +22,52 @@
 // ===== BLE UUIDs =====
 #define SERVICE_UUID        "a0e6fc00-df5e-11ee-a506-0050569c1234"
 #define CHARACTERISTIC_UUID "a0e6fc01-df5e-11ee-a506-0050569c1234"
+#define CONTROL_UUID        "a0e6fc02-df5e-11ee-a506-0050569c1234"
+
+// ===== Wire format (must match FrameProtocol.java in the app) =====
+#define CMD_SET_FORMAT   0x01
+#define FORMAT_JSON      0x00
+#define FORMAT_BINARY_V1 0x01
+#define FORMAT_BINARY_V2 0x02
+#define CMD_SET_MAX_PAYLOAD 0x02     // + uint16 LE: negotiated MTU - 3
+
+#define FRAME_SYNC       0xA5
+#define FRAME_VERSION_1  1
+#define FRAME_VERSION_2  2
+#define FRAME_HEADER     6
+#define V1_PAYLOAD_SIZE  16
+#define FIELD_MISSING    ((int16_t)0x8000)
+#define FLAG_FINGER      0x01
+
+// Batched (v2) mode: sample at the model's 32 Hz and pack rows into one notification
+#define V2_HEADER_SIZE   2
+#define V2_ROW_SIZE      (2 + V1_PAYLOAD_SIZE)
+#define SAMPLE_PERIOD_US 31250UL     // 32 Hz
+#define BATCH_FLUSH_MS   250         // bounds added latency
+#define FRAME_OVERHEAD   (FRAME_HEADER + 1)
+// (MTU 517 - 3 ATT bytes - 7 frame overhead - 2 batch header) / 18 bytes per row
+#define BATCH_ROWS_LIMIT 28
+// Until the app reports its MTU, assume the 256-byte MTU this sketch used to request
+#define DEFAULT_BATCH_ROWS 13
 
 // ===== Sensor Objects =====
 MAX30105 particleSensor; // For HR sensor
 Adafruit_MPU6050 mpu; // For IMU
 BLECharacteristic* pCharacteristic;
+BLECharacteristic* pControl;
 BLEServer* pServer;
 
+// JSON until the app asks for binary; reset on every disconnect
+volatile uint8_t wireFormat = FORMAT_JSON;
+uint16_t frameSeq = 0;
+
+// Rows waiting for the next batched notification
+uint8_t batchFrame[FRAME_OVERHEAD + V2_HEADER_SIZE + BATCH_ROWS_LIMIT * V2_ROW_SIZE];
+uint8_t batchRows = 0;
+uint8_t batchMaxRows = DEFAULT_BATCH_ROWS;
+unsigned long batchStartMs = 0;
+unsigned long nextSampleUs = 0;
+
 // ===== Heart Rate & HRV Variables =====
 const byte RATE_SIZE = 16;
 unsigned long rrIntervals[RATE_SIZE];
@@ -43,6 +82,7 @@ bool fingerDetected = false;
 
 // ===== BLE Connection Timing =====
 unsigned long connectionTime = 0;
+BLE2902* pCccd;  // notifications descriptor; data starts as soon as the app subscribes
 
 // ==== BLE Server Callbacks ====
 class MyServerCallbacks : public BLEServerCallbacks {
@@ -54,13 +94,127 @@ class MyServerCallbacks : public BLEServerCallbacks {
   void onDisconnect(BLEServer* pServer) override {
     Serial.println("Central disconnected");
     connectionTime = 0;
+    pCccd->setNotifications(false);
+    wireFormat = FORMAT_JSON;
+    batchRows = 0;
+    batchMaxRows = DEFAULT_BATCH_ROWS;
+  }
+};
+
+// ==== Control characteristic (app -> band) ====
+class ControlCallbacks : public BLECharacteristicCallbacks {
+  void onWrite(BLECharacteristic* c) override {
+    std::string v = c->getValue();
+    if (v.length() >= 2 && (uint8_t)v[0] == CMD_SET_FORMAT) {
+      uint8_t fmt = (uint8_t)v[1];
+      if (fmt == FORMAT_JSON || fmt == FORMAT_BINARY_V1 || fmt == FORMAT_BINARY_V2) {
+        wireFormat = fmt;
+        batchRows = 0;
+        Serial.print("Wire format set to ");
+        Serial.println(fmt == FORMAT_BINARY_V2 ? "batched v2" : fmt == FORMAT_BINARY_V1 ? "binary v1" : "JSON");
+      }
+    } else if (v.length() >= 3 && (uint8_t)v[0] == CMD_SET_MAX_PAYLOAD) {
+      // Pack as many rows as one notification can carry on this link
+      int maxPayload = (uint8_t)v[1] | ((uint8_t)v[2] << 8);
+      int rows = (maxPayload - FRAME_OVERHEAD - V2_HEADER_SIZE) / V2_ROW_SIZE;
+      batchMaxRows = (uint8_t)constrain(rows, 1, BATCH_ROWS_LIMIT);
+      batchRows = 0;
+      Serial.print("Batch rows per notification: ");
+      Serial.println(batchMaxRows);
+    }
   }
 };
 
+// ===== Binary frame encoder =====
+uint8_t crc8(const uint8_t* data, size_t len) {
+  uint8_t crc = 0;
+  for (size_t i = 0; i < len; i++) {
+    crc ^= data[i];
+    for (int b = 0; b < 8; b++) {
+      crc = (crc & 0x80) ? (uint8_t)((crc << 1) ^ 0x07) : (uint8_t)(crc << 1);
+    }
+  }
+  return crc;
+}
+
+void putI16(uint8_t* p, int16_t v) {
+  p[0] = (uint8_t)(v & 0xFF);
+  p[1] = (uint8_t)((v >> 8) & 0xFF);
+}
+
+// Scales a reading into int16 fixed point; out-of-range or invalid values become FIELD_MISSING
+int16_t scaled(float v, float scale) {
+  if (isnan(v) || v <= -900) return FIELD_MISSING;
+  float s = roundf(v * scale);
+  if (s < -32767.0f || s > 32767.0f) return FIELD_MISSING;
+  return (int16_t)s;
+}
+
+// Writes the 16-byte v1 sample layout at p
+void encodeSample(uint8_t* p, float bpm, float hrvMs, float temp,
+                  float ax, float ay, float az, float bvpVal, bool finger) {
+  putI16(p + 0,  scaled(bpm, 10));
+  putI16(p + 2,  scaled(hrvMs, 10));
+  putI16(p + 4,  scaled(temp, 100));
+  putI16(p + 6,  scaled(ax, 100));
+  putI16(p + 8,  scaled(ay, 100));
+  putI16(p + 10, scaled(az, 100));
+  putI16(p + 12, scaled(bvpVal, 1000));
+  p[14] = finger ? FLAG_FINGER : 0;
+  p[15] = 0;
+}
+
+// Fills in header and CRC around a payload already written at out + FRAME_HEADER; returns frame length
+size_t sealFrame(uint8_t* out, uint8_t version, uint16_t payloadLen) {
+  out[0] = FRAME_SYNC;
+  out[1] = version;
+  out[2] = (uint8_t)(payloadLen & 0xFF);
+  out[3] = (uint8_t)(payloadLen >> 8);
+  out[4] = (uint8_t)(frameSeq & 0xFF);
+  out[5] = (uint8_t)(frameSeq >> 8);
+  frameSeq++;
+
+  size_t n = FRAME_HEADER + payloadLen;
+  out[n] = crc8(out + 1, n - 1);
+  return n + 1;
+}
+
+// Writes one version-1 frame into out (needs FRAME_HEADER + V1_PAYLOAD_SIZE + 1 bytes); returns its length
+size_t encodeFrameV1(uint8_t* out, float bpm, float hrvMs, float temp,
+                     float ax, float ay, float az, float bvpVal, bool finger) {
+  encodeSample(out + FRAME_HEADER, bpm, hrvMs, temp, ax, ay, az, bvpVal, finger);
+  return sealFrame(out, FRAME_VERSION_1, V1_PAYLOAD_SIZE);
+}
+
+// Appends one row to the pending v2 batch, stamped relative to the batch's first row
+void addBatchRow(float bpm, float hrvMs, float temp,
+                 float ax, float ay, float az, float bvpVal, bool finger) {
+  unsigned long now = millis();
+  if (batchRows == 0) batchStartMs = now;
+  uint8_t* row = batchFrame + FRAME_HEADER + V2_HEADER_SIZE + batchRows * V2_ROW_SIZE;
+  uint16_t dt = (uint16_t)(now - batchStartMs);
+  row[0] = (uint8_t)(dt & 0xFF);
+  row[1] = (uint8_t)(dt >> 8);
+  encodeSample(row + 2, bpm, hrvMs, temp, ax, ay, az, bvpVal, finger);
+  batchRows++;
+}
+
+// Sends the pending rows as one v2 frame
+void flushBatch() {
+  if (batchRows == 0) return;
+  uint8_t* payload = batchFrame + FRAME_HEADER;
+  payload[0] = batchRows;
+  payload[1] = 0;
+  size_t len = sealFrame(batchFrame, FRAME_VERSION_2, V2_HEADER_SIZE + batchRows * V2_ROW_SIZE);
+  pCharacteristic->setValue(batchFrame, len);
+  if (pServer->getConnectedCount() > 0) pCharacteristic->notify();
+  batchRows = 0;
+}
+
 // ===== BLE Setup =====
 void setupBLE() {
   BLEDevice::init("ESP32_EmotionBand");
-  BLEDevice::setMTU(256);
+  BLEDevice::setMTU(517);
   pServer = BLEDevice::createServer();
   pServer->setCallbacks(new MyServerCallbacks());
 
@@ -71,12 +225,23 @@ void setupBLE() {
     BLECharacteristic::PROPERTY_READ | BLECharacteristic::PROPERTY_NOTIFY
   );
 
-  BLE2902* descriptor = new BLE2902();
-  descriptor->setNotifications(true);
-  pCharacteristic->addDescriptor(descriptor);
+  pCccd = new BLE2902();
+  pCharacteristic->addDescriptor(pCccd);
+
+  pControl = pService->createCharacteristic(
+    CONTROL_UUID,
+    BLECharacteristic::PROPERTY_WRITE
+  );
+  pControl->setCallbacks(new ControlCallbacks());
 
   pService->start();
   BLEAdvertising* pAdvertising = BLEDevice::getAdvertising();
+  // Service UUID in the advertisement lets the app use a hardware scan filter;
+  // the name no longer fits next to a 128-bit UUID, so it goes in the scan response
+  pAdvertising->addServiceUUID(SERVICE_UUID);
+  pAdvertising->setScanResponse(true);
+  pAdvertising->setMinInterval(0x20); // 20 ms: found within the first scan window
+  pAdvertising->setMaxInterval(0x40); // 40 ms
   pAdvertising->start();
 
   Serial.println("BLE advertising started");
@@ -133,11 +298,23 @@ void setup() {
 // ===== Loop (collecting sensor data) =====
 void loop() {
   static unsigned long lastSend = 0;
-
-  // Wait 3 seconds after connection before sending data
-  if (pServer->getConnectedCount() > 0 && (millis() - connectionTime < 3000)) {
-    delay(10);
-    return;
+  static bool subscribed = false;
+
+  // Hold data until the app has enabled notifications, then send the first sample right away
+  // (used to be a fixed 3 s wait after connecting)
+  if (pServer->getConnectedCount() > 0) {
+    if (!pCccd->getNotifications()) {
+      subscribed = false;
+      delay(10);
+      return;
+    }
+    if (!subscribed) {
+      subscribed = true;
+      lastSend = millis() - 2000;
+      Serial.print("Subscribed after ");
+      Serial.print(millis() - connectionTime);
+      Serial.println(" ms");
+    }
   }
 // HR detection
   uint32_t irValue = particleSensor.getIR();
@@ -181,6 +358,25 @@ void loop() {
 
     lastBeat = millis();
   }
+// Batched mode: one row every 31.25 ms, one notification per full batch or 250 ms
+  if (wireFormat == FORMAT_BINARY_V2) {
+    unsigned long nowUs = micros();
+    if ((long)(nowUs - nextSampleUs) >= 0) {
+      nextSampleUs += SAMPLE_PERIOD_US;
+      if ((long)(nowUs - nextSampleUs) >= 0) nextSampleUs = nowUs + SAMPLE_PERIOD_US; // fell behind; don't burst
+      sensors_event_t acc, gyro, tempEvent;
+      mpu.getEvent(&acc, &gyro, &tempEvent);
+      float objectTemp = readMLX90614(MLX90614_TOBJ);
+      addBatchRow(bpmAvg, hrv, objectTemp,
+                  acc.acceleration.x, acc.acceleration.y, acc.acceleration.z,
+                  irValue / 100000.0f, fingerDetected);
+    }
+    if (batchRows >= batchMaxRows || (batchRows > 0 && millis() - batchStartMs >= BATCH_FLUSH_MS)) {
+      flushBatch();
+    }
+    return;
+  }
+
 // Send data every 2 seconds
   if (millis() - lastSend >= 2000) {
     sensors_event_t acc, gyro, tempEvent;
@@ -188,25 +384,40 @@ void loop() {
     float objectTemp = readMLX90614(MLX90614_TOBJ);
     float bvp = irValue / 100000.0f;
     
-// JSON object with all sensor data
-    StaticJsonDocument<256> doc;
-    doc["acc_x"] = round(acc.acceleration.x * 100) / 100.0;
-    doc["acc_y"] = round(acc.acceleration.y * 100) / 100.0;
-    doc["acc_z"] = round(acc.acceleration.z * 100) / 100.0;
-    doc["temp"]  = round(objectTemp * 100) / 100.0;
-    doc["bvp"]   = round(bvp * 1000) / 1000.0;
-    doc["bpm"]   = round(bpmAvg);
-    doc["hrv"]   = round(hrv);
-    doc["finger"] = fingerDetected ? 1 : 0;
-
-    String jsonString;
-    serializeJson(doc, jsonString);
-    pCharacteristic->setValue(jsonString.c_str());
-
-    if (pServer->getConnectedCount() > 0) {
-      pCharacteristic->notify();
-      Serial.print("Sent: ");
-      Serial.println(jsonString);
+    if (wireFormat == FORMAT_BINARY_V1) {
+      uint8_t frame[FRAME_HEADER + V1_PAYLOAD_SIZE + 1];
+      size_t len = encodeFrameV1(frame, bpmAvg, hrv, objectTemp,
+                                 acc.acceleration.x, acc.acceleration.y, acc.acceleration.z,
+                                 bvp, fingerDetected);
+      pCharacteristic->setValue(frame, len);
+
+      if (pServer->getConnectedCount() > 0) {
+        pCharacteristic->notify();
+        Serial.print("Sent frame #");
+        Serial.println((uint16_t)(frameSeq - 1));
+      }
+    } else {
+      // JSON fallback for apps that never negotiated the binary format
+      StaticJsonDocument<256> doc;
+      doc["acc_x"] = round(acc.acceleration.x * 100) / 100.0;
+      doc["acc_y"] = round(acc.acceleration.y * 100) / 100.0;
+      doc["acc_z"] = round(acc.acceleration.z * 100) / 100.0;
+      doc["temp"]  = round(objectTemp * 100) / 100.0;
+      doc["bvp"]   = round(bvp * 1000) / 1000.0;
+      doc["bpm"]   = round(bpmAvg);
+      doc["hrv"]   = round(hrv);
+      doc["finger"] = fingerDetected ? 1 : 0;
+      doc["seq"] = frameSeq++; // same counter as binary frames, for loss accounting
+
+      String jsonString;
+      serializeJson(doc, jsonString);
+      pCharacteristic->setValue(jsonString.c_str());
+
+      if (pServer->getConnectedCount() > 0) {
+        pCharacteristic->notify();
+        Serial.print("Sent: ");
+        Serial.println(jsonString);
+      }
     }
 
     lastSend = millis();